@@ -0,0 +1,121 @@
+package me.lauriichan.clay4j.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.unimi.dsi.fastutil.objects.ObjectList;
+import me.lauriichan.clay4j.Element;
+import me.lauriichan.clay4j.LayoutContext;
+import me.lauriichan.clay4j.RenderCommandBuffer;
+
+/**
+ * Measures the frame lifecycle of a {@link LayoutContext}.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test}, extra JMH arguments can be passed through {@code -Djmh.args="..."}. The default
+ * arguments enable the gc profiler so that {@code gc.alloc.rate.norm} is reported next to the time per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayoutContextBenchmark {
+
+    private static final float[][] POINTERS = {
+        {
+            12f,
+            12f
+        },
+        {
+            TreeShape.WIDTH / 2f,
+            TreeShape.HEIGHT / 2f
+        },
+        {
+            TreeShape.WIDTH - 40f,
+            TreeShape.HEIGHT / 3f
+        },
+        {
+            TreeShape.WIDTH / 4f,
+            TreeShape.HEIGHT - 20f
+        }
+    };
+
+    @Param({
+        "DEEP",
+        "WIDE",
+        "TEXT",
+        "FLOATING"
+    })
+    public TreeShape shape;
+
+    @Param({
+        "200",
+        "2000"
+    })
+    public int size;
+
+    private LayoutContext context;
+    private int pointer;
+
+    @Setup
+    public void setup() {
+        context = new LayoutContext(TreeShape.WIDTH, TreeShape.HEIGHT);
+        frame();
+    }
+
+    /**
+     * Declares and lays out a complete frame, this is what an application does every frame.
+     */
+    @Benchmark
+    public RenderCommandBuffer frame() {
+        context.reset();
+        shape.build(context, size);
+        context.calculateLayout();
+        return context.commandBuffer();
+    }
+
+    /**
+     * Only declares the tree, the element sizes are calculated while closing the elements.
+     */
+    @Benchmark
+    public int declare() {
+        context.reset();
+        shape.build(context, size);
+        return context.rootAmount();
+    }
+
+    /**
+     * Runs the layout passes on the tree that was declared during setup.
+     */
+    @Benchmark
+    public RenderCommandBuffer calculateLayout() {
+        context.calculateLayout();
+        return context.commandBuffer();
+    }
+
+    @Benchmark
+    public ObjectList<Element> setPointer() {
+        float[] position = POINTERS[pointer++ & 3];
+        context.setPointer(position[0], position[1], false);
+        return context.hoveredElements();
+    }
+
+    @Benchmark
+    public boolean updateScrollContainers() {
+        context.updateScrollContainers(true, 0f, 1f, 1f / 144f);
+        return context.hasChanged();
+    }
+
+}
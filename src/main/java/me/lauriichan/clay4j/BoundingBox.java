@@ -2,6 +2,10 @@ package me.lauriichan.clay4j;
 
 import me.lauriichan.clay4j.util.DebugPrinter;
 
+/**
+ * Bounds of an element in a layout, every element gets its own box which is only updated when the same element is laid out
+ * again in retained mode or when a pooled element is reused.
+ */
 public final class BoundingBox {
 
     float x, y;
@@ -14,6 +18,13 @@ public final class BoundingBox {
         this.height = height;
     }
 
+    void set(float x, float y, float width, float height) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
     public float x() {
         return x;
     }
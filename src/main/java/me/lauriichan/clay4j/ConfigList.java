@@ -0,0 +1,97 @@
+package me.lauriichan.clay4j;
+
+import java.util.RandomAccess;
+
+import it.unimi.dsi.fastutil.objects.AbstractObjectList;
+import it.unimi.dsi.fastutil.objects.ObjectList;
+
+/**
+ * Unmodifiable list of the configs of a layout.
+ * <p>
+ * The first config of every built-in config type is resolved when the list is created, so looking one of them up takes
+ * constant time instead of scanning the list.
+ */
+public final class ConfigList extends AbstractObjectList<IElementConfig> implements RandomAccess {
+
+    private static final int TEXT = 0, FLOATING = 1, CLIP = 2, ASPECT_RATIO = 3, BORDER = 4, VIRTUALIZED = 5;
+    private static final int SLOT_COUNT = 6;
+
+    private static final ConfigList EMPTY = new ConfigList(new IElementConfig[0]);
+
+    private final IElementConfig[] configs;
+    private final IElementConfig[] slots = new IElementConfig[SLOT_COUNT];
+
+    private ConfigList(IElementConfig[] configs) {
+        this.configs = configs;
+        for (IElementConfig config : configs) {
+            int slot = slot(config.getClass());
+            if (slot != -1 && slots[slot] == null) {
+                slots[slot] = config;
+            }
+        }
+    }
+
+    public static ConfigList of(ObjectList<IElementConfig> configs) {
+        if (configs instanceof ConfigList list) {
+            return list;
+        }
+        if (configs == null || configs.isEmpty()) {
+            return EMPTY;
+        }
+        return new ConfigList(configs.toArray(new IElementConfig[configs.size()]));
+    }
+
+    @Override
+    public IElementConfig get(int index) {
+        if (index < 0 || index >= configs.length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return configs[index];
+    }
+
+    @Override
+    public int size() {
+        return configs.length;
+    }
+
+    /**
+     * Returns the first config of the given type or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public <E extends IElementConfig> E config(Class<E> type) {
+        int slot = slot(type);
+        if (slot != -1) {
+            return (E) slots[slot];
+        }
+        for (IElementConfig config : configs) {
+            if (type.isAssignableFrom(config.getClass())) {
+                return type.cast(config);
+            }
+        }
+        return null;
+    }
+
+    private static int slot(Class<?> type) {
+        // Built-in configs are records, so they can only be matched by their exact type
+        if (type == IElementConfig.Text.class) {
+            return TEXT;
+        }
+        if (type == IElementConfig.Floating.class) {
+            return FLOATING;
+        }
+        if (type == IElementConfig.Clip.class) {
+            return CLIP;
+        }
+        if (type == IElementConfig.AspectRatio.class) {
+            return ASPECT_RATIO;
+        }
+        if (type == IElementConfig.Border.class) {
+            return BORDER;
+        }
+        if (type == IElementConfig.Virtualized.class) {
+            return VIRTUALIZED;
+        }
+        return -1;
+    }
+
+}
@@ -6,20 +6,35 @@ import me.lauriichan.clay4j.util.DebugPrinter;
 
 public final class ElementContext {
 
-    private final float layoutWidth, layoutHeight;
-    private final Consumer<RenderCommand> pushCommand;
+    private float layoutWidth, layoutHeight;
+    private RenderCommandBuffer buffer;
+    private Consumer<RenderCommand> pushCommand;
 
     int zIndex;
     boolean emitRectangle;
     boolean offscreen;
     BoundingBox boundingBox;
 
+    ElementContext() {}
+
+    /**
+     * @deprecated the layout context writes the commands into a {@link RenderCommandBuffer}, every command pushed to this
+     *                 context is created as record and passed to the consumer instead
+     */
+    @Deprecated
     public ElementContext(float layoutWidth, float layoutHeight, Consumer<RenderCommand> pushCommand) {
         this.layoutWidth = layoutWidth;
         this.layoutHeight = layoutHeight;
         this.pushCommand = pushCommand;
     }
 
+    void reset(float layoutWidth, float layoutHeight, RenderCommandBuffer buffer) {
+        this.layoutWidth = layoutWidth;
+        this.layoutHeight = layoutHeight;
+        this.buffer = buffer;
+        this.boundingBox = null;
+    }
+
     public boolean isOffscreen(BoundingBox boundingBox) {
         return isOffscreen(boundingBox.x, boundingBox.y, boundingBox.width, boundingBox.height);
     }
@@ -57,7 +72,36 @@ public final class ElementContext {
     }
 
     public void push(RenderCommand command) {
-        pushCommand.accept(command);
+        if (buffer == null) {
+            pushCommand.accept(command);
+            return;
+        }
+        BoundingBox box = command.boundingBox();
+        buffer.add(command.id(), command.zIndex(), command.element(), box.x, box.y, box.width, box.height, command.data());
+    }
+
+    public void push(String id, Element element, BoundingBox boundingBox) {
+        push(id, 0, element, boundingBox.x, boundingBox.y, boundingBox.width, boundingBox.height, null);
+    }
+
+    public void push(String id, int zIndex, Element element, float x, float y, float width, float height, Object data) {
+        if (buffer == null) {
+            pushCommand.accept(new RenderCommand(id, zIndex, element, new BoundingBox(x, y, width, height), data));
+            return;
+        }
+        buffer.add(id, zIndex, element, x, y, width, height, data);
+    }
+
+    /**
+     * Pushes a text command for the line from start to end of the given text, the line is stored as range so no string is
+     * created for it.
+     */
+    public void pushText(int zIndex, Element element, float x, float y, float width, float height, String text, int start, int end) {
+        if (buffer == null) {
+            push(RenderCommand.TEXT_RENDERER_ID, zIndex, element, x, y, width, height, text.substring(start, end));
+            return;
+        }
+        buffer.addText(zIndex, element, x, y, width, height, text, start, end);
     }
     
     @Override
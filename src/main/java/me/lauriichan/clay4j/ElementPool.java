@@ -0,0 +1,71 @@
+package me.lauriichan.clay4j;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+/**
+ * Elements of reset frames, which are reused once no render command refers to them anymore.
+ * <p>
+ * Render commands of a layout are valid until the layout is calculated twice more, so the elements of a frame are retired with
+ * the generation of the commands at the time the frame is reset and only reused two generations later. The bounding box and
+ * the text data of an element stay with it, so they pass the same generation gate. Only used by the thread that declares
+ * the elements.
+ */
+final class ElementPool {
+
+    private final ObjectArrayList<Element> free = new ObjectArrayList<>();
+
+    // Retired elements in the order they were retired, every batch ends at its end index
+    private final ObjectArrayList<Element> retired = new ObjectArrayList<>();
+    private final IntArrayList batchEnds = new IntArrayList(), batchGenerations = new IntArrayList();
+
+    void retire(ElementStore store, int generation) {
+        for (int i = 0; i < store.size; i++) {
+            Element element = store.elements[i];
+            // Hovered elements are still referenced by the context until the pointer is updated
+            if (!element.hovered) {
+                retired.add(element);
+            }
+        }
+        batchEnds.add(retired.size());
+        batchGenerations.add(generation);
+    }
+
+    Element acquire(int generation) {
+        if (free.isEmpty() && !collect(generation)) {
+            return null;
+        }
+        Element element = free.pop();
+        element.recycle();
+        return element;
+    }
+
+    void clear() {
+        free.clear();
+        retired.clear();
+        batchEnds.clear();
+        batchGenerations.clear();
+    }
+
+    private boolean collect(int generation) {
+        int batches = 0;
+        while (batches < batchGenerations.size() && generation - batchGenerations.getInt(batches) >= 2) {
+            batches++;
+        }
+        if (batches == 0) {
+            return false;
+        }
+        int count = batchEnds.getInt(batches - 1);
+        for (int i = 0; i < count; i++) {
+            free.add(retired.get(i));
+        }
+        retired.removeElements(0, count);
+        batchEnds.removeElements(0, batches);
+        batchGenerations.removeElements(0, batches);
+        for (int i = 0; i < batchEnds.size(); i++) {
+            batchEnds.set(i, batchEnds.getInt(i) - count);
+        }
+        return !free.isEmpty();
+    }
+
+}
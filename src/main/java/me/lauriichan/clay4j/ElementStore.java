@@ -0,0 +1,169 @@
+package me.lauriichan.clay4j;
+
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.bytes.ByteArrays;
+import it.unimi.dsi.fastutil.floats.FloatArrays;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.objects.ObjectArrays;
+
+/**
+ * Stores the elements of a frame in primitive arrays indexed by the order in which they were closed, so children always
+ * come before their parent. The sizing passes only work on these arrays, the final sizes are written back to the elements
+ * afterwards.
+ */
+final class ElementStore {
+
+    // Sizing types
+    static final byte FIT = 0, FIXED = 1, GROW = 2, PERCENTAGE = 3;
+
+    // Layout flags
+    static final byte LEFT_TO_RIGHT = 1, CLIPS_HORIZONTAL = 2, CLIPS_VERTICAL = 4, UNWRAPPED_TEXT = 8, ASPECT_RATIO = 16;
+
+    // Frame state
+    static final byte SIZED = 1, FINAL = 2, SKIPPED = 4, REUSED = 8, PINNED = 16;
+
+    int size = 0;
+
+    Element[] elements = new Element[0];
+
+    int[] parent = IntArrays.EMPTY_ARRAY;
+    int[] firstChild = IntArrays.EMPTY_ARRAY;
+    int[] nextSibling = IntArrays.EMPTY_ARRAY;
+    int[] childCount = IntArrays.EMPTY_ARRAY;
+    int[] childGap = IntArrays.EMPTY_ARRAY;
+    // Amount of elements in the subtree of an element, including the element
+    int[] subtreeSize = IntArrays.EMPTY_ARRAY;
+
+    float[] width = FloatArrays.EMPTY_ARRAY;
+    float[] height = FloatArrays.EMPTY_ARRAY;
+    float[] minWidth = FloatArrays.EMPTY_ARRAY;
+    float[] minHeight = FloatArrays.EMPTY_ARRAY;
+
+    byte[] widthType = ByteArrays.EMPTY_ARRAY;
+    byte[] heightType = ByteArrays.EMPTY_ARRAY;
+    // Min and max of min max sizings, the percentage of percentage sizings
+    float[] widthMin = FloatArrays.EMPTY_ARRAY;
+    float[] widthMax = FloatArrays.EMPTY_ARRAY;
+    float[] heightMin = FloatArrays.EMPTY_ARRAY;
+    float[] heightMax = FloatArrays.EMPTY_ARRAY;
+    float[] widthPercentage = FloatArrays.EMPTY_ARRAY;
+    float[] heightPercentage = FloatArrays.EMPTY_ARRAY;
+
+    float[] paddingX = FloatArrays.EMPTY_ARRAY;
+    float[] paddingY = FloatArrays.EMPTY_ARRAY;
+    float[] aspectRatio = FloatArrays.EMPTY_ARRAY;
+
+    byte[] flags = ByteArrays.EMPTY_ARRAY;
+    byte[] state = ByteArrays.EMPTY_ARRAY;
+
+    int add(Element element) {
+        int index = size++;
+        grow(size);
+        elements[index] = element;
+        element.storeIndex = index;
+
+        width[index] = element.intrinsicWidth;
+        height[index] = element.intrinsicHeight;
+        minWidth[index] = element.intrinsicMinWidth;
+        minHeight[index] = element.intrinsicMinHeight;
+
+        LayoutDescriptor descriptor = element.descriptor;
+        widthType[index] = descriptor.widthType;
+        widthMin[index] = descriptor.widthMin;
+        widthMax[index] = descriptor.widthMax;
+        widthPercentage[index] = descriptor.widthPercentage;
+        heightType[index] = descriptor.heightType;
+        heightMin[index] = descriptor.heightMin;
+        heightMax[index] = descriptor.heightMax;
+        heightPercentage[index] = descriptor.heightPercentage;
+        paddingX[index] = descriptor.paddingX;
+        paddingY[index] = descriptor.paddingY;
+        childGap[index] = descriptor.childGap;
+        aspectRatio[index] = descriptor.aspectRatio;
+        flags[index] = descriptor.flags;
+        state[index] = 0;
+
+        // Children are always closed before their parent
+        parent[index] = -1;
+        nextSibling[index] = -1;
+        childCount[index] = element.children.size();
+        subtreeSize[index] = 1;
+        int previous = -1, child;
+        for (int i = 0; i < element.children.size(); i++) {
+            child = element.children.get(i).storeIndex;
+            parent[child] = index;
+            subtreeSize[index] += subtreeSize[child];
+            if (previous == -1) {
+                firstChild[index] = child;
+            } else {
+                nextSibling[previous] = child;
+            }
+            previous = child;
+        }
+        if (previous == -1) {
+            firstChild[index] = -1;
+        }
+        return index;
+    }
+
+    int indexOf(Element element) {
+        int index = element.storeIndex;
+        if (index < 0 || index >= size || elements[index] != element) {
+            return -1;
+        }
+        return index;
+    }
+
+    void updateAspectRatioBox(int index) {
+        if ((flags[index] & ASPECT_RATIO) == 0 || aspectRatio[index] <= 0) {
+            return;
+        }
+        if (width[index] == 0 && height[index] != 0) {
+            width[index] = height[index] * aspectRatio[index];
+        } else if (width[index] != 0 && height[index] == 0) {
+            height[index] = width[index] * (1 / aspectRatio[index]);
+        }
+    }
+
+    void clearState() {
+        Arrays.fill(state, 0, size, (byte) 0);
+    }
+
+    void clear() {
+        Arrays.fill(elements, 0, size, null);
+        size = 0;
+    }
+
+    private void grow(int capacity) {
+        if (capacity <= elements.length) {
+            return;
+        }
+        capacity = Math.max(capacity, Math.max(16, elements.length * 2));
+        elements = ObjectArrays.forceCapacity(elements, capacity, size - 1);
+        parent = IntArrays.forceCapacity(parent, capacity, size - 1);
+        firstChild = IntArrays.forceCapacity(firstChild, capacity, size - 1);
+        nextSibling = IntArrays.forceCapacity(nextSibling, capacity, size - 1);
+        childCount = IntArrays.forceCapacity(childCount, capacity, size - 1);
+        childGap = IntArrays.forceCapacity(childGap, capacity, size - 1);
+        subtreeSize = IntArrays.forceCapacity(subtreeSize, capacity, size - 1);
+        width = FloatArrays.forceCapacity(width, capacity, size - 1);
+        height = FloatArrays.forceCapacity(height, capacity, size - 1);
+        minWidth = FloatArrays.forceCapacity(minWidth, capacity, size - 1);
+        minHeight = FloatArrays.forceCapacity(minHeight, capacity, size - 1);
+        widthType = ByteArrays.forceCapacity(widthType, capacity, size - 1);
+        heightType = ByteArrays.forceCapacity(heightType, capacity, size - 1);
+        widthMin = FloatArrays.forceCapacity(widthMin, capacity, size - 1);
+        widthMax = FloatArrays.forceCapacity(widthMax, capacity, size - 1);
+        heightMin = FloatArrays.forceCapacity(heightMin, capacity, size - 1);
+        heightMax = FloatArrays.forceCapacity(heightMax, capacity, size - 1);
+        widthPercentage = FloatArrays.forceCapacity(widthPercentage, capacity, size - 1);
+        heightPercentage = FloatArrays.forceCapacity(heightPercentage, capacity, size - 1);
+        paddingX = FloatArrays.forceCapacity(paddingX, capacity, size - 1);
+        paddingY = FloatArrays.forceCapacity(paddingY, capacity, size - 1);
+        aspectRatio = FloatArrays.forceCapacity(aspectRatio, capacity, size - 1);
+        flags = ByteArrays.forceCapacity(flags, capacity, size - 1);
+        state = ByteArrays.forceCapacity(state, capacity, size - 1);
+    }
+
+}
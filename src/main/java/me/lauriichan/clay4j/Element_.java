@@ -3,91 +3,210 @@ package me.lauriichan.clay4j;
 import java.util.Optional;
 
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
-import it.unimi.dsi.fastutil.objects.ObjectList;
-import it.unimi.dsi.fastutil.objects.ObjectLists;
-import me.lauriichan.clay4j.Layout.LayoutDirection;
+import me.lauriichan.clay4j.buildergen.BuilderFactory;
 import me.lauriichan.clay4j.buildergen.BuilderReference;
 import me.lauriichan.clay4j.buildergen.FieldReference;
 import me.lauriichan.clay4j.buildergen.GenerateBuilder;
+import me.lauriichan.clay4j.data.TextElementData;
 import me.lauriichan.clay4j.util.DebugPrinter;
 
+/**
+ * A declared element of a layout context.
+ * <p>
+ * With element pooling enabled, the element is reused for a new declaration once its frame was reset and two more layouts
+ * were calculated, references to it must not be kept for longer than that.
+ * <p>
+ * The public fields are read-only, they are assigned by the context and return the same values as their accessors.
+ */
 @GenerateBuilder(name = "newElement", internal = true, rootName = "builder")
 public final class Element_ implements AutoCloseable {
 
     public final LayoutContext context;
 
-    public final long rootTime;
+    // Only assigned when the element is created or reused from the element pool of the context
+    public long rootTime;
 
-    public final Element_ parent;
-    public final Layout layout;
+    public Element_ parent;
+    public Layout layout;
 
-    public final String elementId, clipElementId;
+    public String elementId, clipElementId;
 
-    public final boolean clipsVertical, clipsHorizontal;
-    public final boolean isFloating, isText, hasAspectRatio;
+    public boolean clipsVertical, clipsHorizontal;
+    public boolean isFloating, isText, hasAspectRatio;
 
-    private final ObjectList<IElementData> elementData;
+    Element_ layoutRoot;
+    // Interned flattened form of the layout
+    LayoutDescriptor descriptor;
+
+    private final ObjectArrayList<IElementData> dataList = new ObjectArrayList<>();
+    // Data of text elements, so the layout doesn't have to look it up
+    TextElementData textData;
+    // Text data of the last use of a pooled element, taken by the text config of the next use
+    TextElementData recycledTextData;
 
     private volatile boolean isClosed = false;
 
-    final ObjectArrayList<Element_> children = new ObjectArrayList<>(), parentElements;
+    ObjectArrayList<Element_> children = new ObjectArrayList<>(), previousChildren;
+
+    // Range of the commands of the last frame, only used by roots in retained mode
+    int retainedGeneration = -1, retainedStart, retainedEnd;
+    int retainedVersion;
+
+    // Range of the commands of this element in the retained commands of its root
+    int commandVersion, commandStart, commandEnd;
 
+    // Kept for the next use of a pooled element, which happens after the render commands referring to it were replaced
     BoundingBox boundingBox;
 
+    // Position of the element, for culled elements this is only the position of the culled subtree
     float x, y;
     float minWidth, width;
     float minHeight, height;
+
+    // Sizes right after the element was created and right after it was closed
+    float initialWidth, initialHeight, initialMinWidth, initialMinHeight;
+    float intrinsicWidth, intrinsicHeight, intrinsicMinWidth, intrinsicMinHeight;
+
+    // Sizes the children were last sized with and the sizes after the first layout stage (x-axis, text and vertical effects)
+    float sizedWidth, sizedHeight, sizedFinalHeight;
+    float stagedWidth, stagedHeight;
+
+    boolean sized = false;
+
+    // Index in the element store of the current frame
+    int storeIndex = -1;
+    // Index in the roots of the context, only set for roots while the layout is calculated in parallel
+    int rootIndex = -1;
     
     float percentageMaxY;
     
     boolean hovered = false;
 
+    boolean retained = false, unchanged = false, skipLayout = false;
+
+    // If the element and all of its children are drawn inside of its bounds, only updated while viewport culling is enabled
+    boolean contained = false;
+    // If the subtree of this element was skipped during positioning and if it was positioned afterwards anyway
+    boolean culled = false, culledResolved = false;
+
     int zIndex = 0;
 
     Element_(@FieldReference LayoutContext context, @FieldReference("this") Element_ parent, @BuilderReference Layout layout,
         String elementId) {
-        this.rootTime = parent == null ? System.currentTimeMillis() : parent.rootTime;
         this.context = context;
+        init(parent, context.layoutDescriptor(layout), elementId);
+    }
+
+    final void init(Element_ parent, LayoutDescriptor descriptor, String elementId) {
+        this.rootTime = parent == null ? System.currentTimeMillis() : parent.rootTime;
         this.parent = parent;
-        this.layout = layout;
+        this.descriptor = descriptor;
+        this.layout = descriptor.layout;
         this.elementId = elementId;
-        this.isFloating = layout.config(IElementConfig.Floating.class).isPresent();
-        this.parentElements = parent == null || isFloating ? new ObjectArrayList<>() : parent.parentElements;
-        IElementConfig.Clip clip = layout.config(IElementConfig.Clip.class).orElse(null);
-        if (clip != null) {
-            clipsHorizontal = clip.horizontal();
-            clipsVertical = clip.vertical();
-        } else {
-            clipsHorizontal = clipsVertical = false;
-        }
-        this.hasAspectRatio = layout.config(IElementConfig.AspectRatio.class).isPresent();
+        this.isFloating = descriptor.floating;
+        this.layoutRoot = parent == null || isFloating ? this : parent.layoutRoot;
+        this.clipsHorizontal = descriptor.clipsHorizontal;
+        this.clipsVertical = descriptor.clipsVertical;
+        this.hasAspectRatio = descriptor.hasAspectRatio;
         // TODO: Root scroll containers still kinda don't work yet like this
         // This has to be set somewhere but not really a clue where yet
         this.clipElementId = null;
-        this.isText = layout.config(IElementConfig.Text.class).isPresent();
-        ObjectArrayList<IElementData> list = new ObjectArrayList<>();
+        this.isText = descriptor.text;
         for (IElementConfig config : layout.configs()) {
             IElementData data = config.buildData((Element) (Object) this);
             if (data == null) {
                 continue;
             }
-            list.add(data);
+            if (textData == null && data instanceof TextElementData text) {
+                textData = text;
+            }
+            dataList.add(data);
+        }
+        this.initialWidth = width;
+        this.initialHeight = height;
+        this.initialMinWidth = minWidth;
+        this.initialMinHeight = minHeight;
+    }
+
+    @BuilderFactory
+    static Element_ create(LayoutContext context, Element_ parent, Layout layout, String elementId) {
+        LayoutDescriptor descriptor = context.layoutDescriptor(layout);
+        Element element = context.retainedElement((Element) (Object) parent, descriptor.layout, elementId);
+        if (element != null) {
+            element.retain();
+            return (Element_) (Object) element;
         }
-        this.elementData = ObjectLists.unmodifiable(list);
+        element = context.pooledElement();
+        if (element != null) {
+            element.init((Element) (Object) parent, descriptor, elementId);
+            return (Element_) (Object) element;
+        }
+        // The last descriptor is looked up by identity, so the constructor doesn't hash the layout again
+        return new Element_(context, parent, descriptor.layout, elementId);
     }
 
     public <E extends IElementData> Optional<E> data(Class<E> type) {
-        for (IElementData data : this.elementData) {
-            if (type.isAssignableFrom(data.getClass())) {
-                return Optional.of(type.cast(data));
+        return Optional.ofNullable(dataOrNull(type));
+    }
+
+    /**
+     * Returns the first data of the given type or null if there is none, text data is looked up in constant time.
+     */
+    public <E extends IElementData> E dataOrNull(Class<E> type) {
+        if (type == TextElementData.class) {
+            return type.cast(textData);
+        }
+        for (IElementData data : this.dataList) {
+            if (type.isInstance(data)) {
+                return type.cast(data);
             }
         }
-        return Optional.empty();
+        return null;
     }
     
     public LayoutContext context() {
         return context;
     }
+
+    public long rootTime() {
+        return rootTime;
+    }
+
+    public Element_ parent() {
+        return parent;
+    }
+
+    public Layout layout() {
+        return layout;
+    }
+
+    public String elementId() {
+        return elementId;
+    }
+
+    public String clipElementId() {
+        return clipElementId;
+    }
+
+    public boolean clipsVertical() {
+        return clipsVertical;
+    }
+
+    public boolean clipsHorizontal() {
+        return clipsHorizontal;
+    }
+
+    public boolean isFloating() {
+        return isFloating;
+    }
+
+    public boolean isText() {
+        return isText;
+    }
+
+    public boolean hasAspectRatio() {
+        return hasAspectRatio;
+    }
     
     public boolean isHovered() {
         return hovered;
@@ -104,29 +223,53 @@ public final class Element_ implements AutoCloseable {
             throw new IllegalStateException("Text can't have child elements");
         }
 
-        if (!isText && (!children.isEmpty() || parent == null || isFloating)) {
-            parentElements.add(this);
+        IElementConfig.Virtualized virtualized = layout.configOrNull(IElementConfig.Virtualized.class);
+        if (virtualized != null) {
+            context.buildVirtualItems((Element) (Object) this, virtualized);
+        }
+
+        // An unchanged element keeps the sizes of the last frame
+        unchanged = retained && hasSameChildren();
+        if (!unchanged) {
+            calculateIntrinsicSize();
         }
         context.addElement((Element) (Object) this);
 
-        float leftRightPadding = layout.padding().left() + layout.padding().right();
-        float topBottomPadding = layout.padding().top() + layout.padding().bottom();
-        if (layout.layoutDirection() == LayoutDirection.LEFT_TO_RIGHT) {
+        context.setElementId(elementId, (Element) (Object) this);
+        if (parent == null) {
+            return;
+        }
+        // Floating elements are not added as children apparently
+        if (!isFloating) {
+            parent.children.add(this);
+        }
+    }
+
+    private void calculateIntrinsicSize() {
+        width = initialWidth;
+        height = initialHeight;
+        minWidth = initialMinWidth;
+        minHeight = initialMinHeight;
+
+        LayoutDescriptor descriptor = this.descriptor;
+        float leftRightPadding = descriptor.paddingX;
+        float topBottomPadding = descriptor.paddingY;
+        if (descriptor.leftToRight) {
             // Handle left to right layout
             minWidth = leftRightPadding;
             width = leftRightPadding;
             for (Element_ child : children) {
-                width += child.width;
-                height = Math.max(height, child.height + topBottomPadding);
+                width += child.intrinsicWidth;
+                height = Math.max(height, child.intrinsicHeight + topBottomPadding);
 
                 if (!clipsHorizontal) {
-                    minWidth += child.minWidth;
+                    minWidth += child.intrinsicMinWidth;
                 }
                 if (!clipsVertical) {
-                    minHeight = Math.max(minHeight, child.minHeight + topBottomPadding);
+                    minHeight = Math.max(minHeight, child.intrinsicMinHeight + topBottomPadding);
                 }
             }
-            float totalGaps = Math.max(children.size() - 1, 0) * layout.childGap();
+            float totalGaps = Math.max(children.size() - 1, 0) * descriptor.childGap;
             width += totalGaps;
             if (!clipsHorizontal) {
                 minWidth += totalGaps;
@@ -136,62 +279,112 @@ public final class Element_ implements AutoCloseable {
             minHeight = topBottomPadding;
             height = topBottomPadding;
             for (Element_ child : children) {
-                width = Math.max(width, child.width + leftRightPadding);
-                height += child.height;
+                width = Math.max(width, child.intrinsicWidth + leftRightPadding);
+                height += child.intrinsicHeight;
 
                 if (!clipsHorizontal) {
-                    minWidth = Math.max(minWidth, child.minWidth + leftRightPadding);
+                    minWidth = Math.max(minWidth, child.intrinsicMinWidth + leftRightPadding);
                 }
                 if (!clipsVertical) {
-                    minHeight += child.minHeight;
+                    minHeight += child.intrinsicMinHeight;
                 }
             }
-            float totalGaps = Math.max(children.size() - 1, 0) * layout.childGap();
+            float totalGaps = Math.max(children.size() - 1, 0) * descriptor.childGap;
             height += totalGaps;
             if (!clipsVertical) {
                 minHeight += totalGaps;
             }
         }
 
-        if (layout.width().type() != ISizing.Type.PERCENTAGE) {
-            ISizing.MinMax minMax = layout.width().minMax();
-            width = Math.min(Math.max(width, minMax.min()), minMax.max());
-            minWidth = Math.min(Math.max(minWidth, minMax.min()), minMax.max());
+        if (descriptor.widthType != ElementStore.PERCENTAGE) {
+            width = Math.min(Math.max(width, descriptor.widthMin), descriptor.widthMax);
+            minWidth = Math.min(Math.max(minWidth, descriptor.widthMin), descriptor.widthMax);
         } else {
             width = 0f;
         }
 
-        if (layout.height().type() != ISizing.Type.PERCENTAGE) {
-            ISizing.MinMax minMax = layout.height().minMax();
-            height = Math.min(Math.max(height, minMax.min()), minMax.max());
-            minHeight = Math.min(Math.max(minHeight, minMax.min()), minMax.max());
+        if (descriptor.heightType != ElementStore.PERCENTAGE) {
+            height = Math.min(Math.max(height, descriptor.heightMin), descriptor.heightMax);
+            minHeight = Math.min(Math.max(minHeight, descriptor.heightMin), descriptor.heightMax);
         } else {
             height = 0f;
         }
 
         updateAspectRatioBox();
 
-        context.setElementId(elementId, (Element) (Object) this);
-        if (parent == null) {
-            return;
+        intrinsicWidth = width;
+        intrinsicHeight = height;
+        intrinsicMinWidth = minWidth;
+        intrinsicMinHeight = minHeight;
+    }
+
+    private boolean hasSameChildren() {
+        if (previousChildren.size() != children.size()) {
+            return false;
         }
-        // Floating elements are not added as children apparently
-        if (!isFloating) {
-            parent.children.add(this);
+        Element_ child;
+        for (int i = 0; i < children.size(); i++) {
+            child = children.get(i);
+            if (child != previousChildren.get(i) || !child.unchanged) {
+                return false;
+            }
         }
+        return true;
+    }
+
+    /**
+     * Clears everything of the last use of this element, so it can be initialized again.
+     */
+    final void recycle() {
+        isClosed = false;
+        parent = layoutRoot = null;
+        layout = null;
+        descriptor = null;
+        elementId = clipElementId = null;
+        dataList.clear();
+        if (textData != null) {
+            recycledTextData = textData;
+            textData = null;
+        }
+        children.clear();
+        if (previousChildren != null) {
+            previousChildren.clear();
+        }
+        retainedGeneration = -1;
+        retainedStart = retainedEnd = retainedVersion = 0;
+        commandVersion = commandStart = commandEnd = 0;
+        x = y = 0f;
+        minWidth = width = minHeight = height = 0f;
+        sized = false;
+        storeIndex = rootIndex = -1;
+        percentageMaxY = 0f;
+        hovered = false;
+        retained = unchanged = skipLayout = false;
+        contained = culled = culledResolved = false;
+        zIndex = 0;
+    }
+
+    final void retain() {
+        isClosed = false;
+        retained = true;
+        unchanged = false;
+        skipLayout = false;
+        ObjectArrayList<Element_> list = previousChildren;
+        previousChildren = children;
+        children = list == null ? new ObjectArrayList<>() : list;
+        children.clear();
     }
 
     final void updateAspectRatioBox() {
-        layout.config(IElementConfig.AspectRatio.class).ifPresent(aspectRatio -> {
-            if (aspectRatio.aspectRatio() <= 0) {
-                return;
-            }
-            if (width == 0 && height != 0) {
-                width = height * aspectRatio.aspectRatio();
-            } else if (width != 0 && height == 0) {
-                height = width * (1 / aspectRatio.aspectRatio());
-            }
-        });
+        float aspectRatio = descriptor.aspectRatio;
+        if (!descriptor.hasAspectRatio || aspectRatio <= 0) {
+            return;
+        }
+        if (width == 0 && height != 0) {
+            width = height * aspectRatio;
+        } else if (width != 0 && height == 0) {
+            height = width * (1 / aspectRatio);
+        }
     }
     
     @Override
@@ -50,7 +50,13 @@ public interface IElementConfig_ {
             element.height = lineHeight > 0 ? lineHeight : measured.height();
             element.minWidth = measured.minWidth();
             element.minHeight = element.height;
-            return new TextElementData(measured.width(), measured.height());
+            TextElementData data = element.recycledTextData;
+            if (data == null) {
+                return new TextElementData(measured.width(), measured.height());
+            }
+            element.recycledTextData = null;
+            data.reset(measured.width(), measured.height());
+            return data;
         }
 
         @Override
@@ -59,26 +65,26 @@ public interface IElementConfig_ {
                 return;
             }
             Text config = (Text) elementConfig;
-            TextElementData data = element.data(TextElementData.class).get();
+            TextElementData data = element.textData;
             float naturalLineHeight = data.preferredHeight;
             float finalLineHeight = config.lineHeight > 0 ? config.lineHeight : naturalLineHeight;
             float lineHeightOffset = (finalLineHeight - naturalLineHeight) / 2;
             float yPosition = lineHeightOffset;
             BoundingBox box = context.boundingBox;
-            for (int index = 0; index < data.lines.size(); index++) {
-                TextElementData.Line line = data.lines.get(index);
-                if (line.text().isEmpty()) {
+            for (int index = 0; index < data.lineCount(); index++) {
+                if (data.isLineEmpty(index)) {
                     yPosition += finalLineHeight;
                     continue;
                 }
-                float offsetX = box.width - line.width();
+                float lineWidth = data.lineWidth(index);
+                float offsetX = box.width - lineWidth;
                 if (config.alignment() == HAlignment.LEFT) {
                     offsetX = 0f;
                 } else if (config.alignment() == HAlignment.CENTER) {
                     offsetX /= 2f;
                 }
-                context.push(new RenderCommand(RenderCommand.TEXT_RENDERER_ID, context.zIndex, element,
-                    new BoundingBox(box.x + offsetX, box.y + yPosition, line.width(), line.height()), line.text()));
+                context.pushText(context.zIndex, element, box.x + offsetX, box.y + yPosition, lineWidth, data.lineHeight(index),
+                    data.text(), data.lineStart(index), data.lineEnd(index));
                 yPosition += finalLineHeight;
                 if (box.y + yPosition > context.layoutHeight()) {
                     break;
@@ -153,7 +159,7 @@ public interface IElementConfig_ {
             if (element.elementId == null || (!horizontal && !vertical)) {
                 return;
             }
-            context.push(new RenderCommand(RenderCommand.CLIPPING_START_ID, element, context.boundingBox()));
+            context.push(RenderCommand.CLIPPING_START_ID, element, context.boundingBox());
         }
 
         @Override
@@ -161,11 +167,33 @@ public interface IElementConfig_ {
             if (element.elementId == null || (!horizontal && !vertical)) {
                 return;
             }
-            context.push(new RenderCommand(RenderCommand.CLIPPING_END_ID, element, context.boundingBox()));
+            context.push(RenderCommand.CLIPPING_END_ID, element, context.boundingBox());
         }
 
     }
 
+    /**
+     * Only declares the items of a clipped container which are inside of its viewport.
+     * <p>
+     * The items are declared in lines along the layout direction of the container when it is closed, after its other children.
+     * Lines outside of the viewport and the overscan are replaced by spacers, so the content size of the container stays the
+     * same as if all items were declared.
+     * <p>
+     * Only items with the fixed item extent along the layout direction are supported, the spacers are sized from the extent
+     * and items of another size move the content while scrolling. Until the container was laid out once its fixed or max size,
+     * clamped to the size of the layout, is used as viewport.
+     */
+    @GenerateBuilder
+    public static record Virtualized(int itemCount, float itemExtent, int itemsPerLine, int overscan, IVirtualItemBuilder items)
+        implements IElementConfig_ {
+
+        @BuilderDefault("itemsPerLine")
+        public static final int DEFAULT_ITEMS_PER_LINE = 1;
+        @BuilderDefault("overscan")
+        public static final int DEFAULT_OVERSCAN = 2;
+
+    }
+
     @GenerateBuilder
     public static record Border(@BuilderReference BorderWidth width) implements IElementConfig_ {
 
@@ -6,4 +6,20 @@ public interface IFont {
 
     void calculateSize(String text, float fontSize, float[] size);
 
+    /**
+     * Calculates the sizes of multiple parts of a text at once.
+     * <p>
+     * The ranges contain the start (inclusive) and end (exclusive) of each part, the width and height of each part are
+     * written to the sizes at the same position. By default every part is measured on its own, fonts that can measure a whole
+     * text at once should override this.
+     */
+    default void calculateSizes(CharSequence text, int[] ranges, int count, float fontSize, float[] sizes) {
+        float[] size = new float[2];
+        for (int index = 0; index < count * 2; index += 2) {
+            calculateSize(text.subSequence(ranges[index], ranges[index + 1]).toString(), fontSize, size);
+            sizes[index] = size[0];
+            sizes[index + 1] = size[1];
+        }
+    }
+
 }
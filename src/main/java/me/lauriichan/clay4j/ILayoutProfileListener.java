@@ -0,0 +1,11 @@
+package me.lauriichan.clay4j;
+
+@FunctionalInterface
+public interface ILayoutProfileListener {
+
+    /**
+     * Called on the thread that calculated the layout, right after the layout was calculated.
+     */
+    void onLayout(LayoutProfile profile);
+
+}
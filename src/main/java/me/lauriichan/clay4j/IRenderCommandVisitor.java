@@ -0,0 +1,29 @@
+package me.lauriichan.clay4j;
+
+/**
+ * Receives the render commands of a {@link RenderCommandBuffer} by their kind, so a renderer doesn't have to compare the
+ * command ids or cast the command data.
+ * <p>
+ * Every method does nothing by default, coordinates are the bounding box of the command.
+ */
+public interface IRenderCommandVisitor {
+
+    default void onRectangle(int zIndex, Element element, float x, float y, float width, float height) {}
+
+    default void onText(int zIndex, Element element, float x, float y, float width, float height, String text) {}
+
+    /**
+     * Receives the line of a text command as range of its text, so no string has to be created for the line. Passes the line
+     * to {@link #onText(int, Element, float, float, float, float, String)} by default.
+     */
+    default void onText(int zIndex, Element element, float x, float y, float width, float height, String text, int start, int end) {
+        onText(zIndex, element, x, y, width, height, text.substring(start, end));
+    }
+
+    default void onClipStart(int zIndex, Element element, float x, float y, float width, float height) {}
+
+    default void onClipEnd(int zIndex, Element element, float x, float y, float width, float height) {}
+
+    default void onCustom(String id, int zIndex, Element element, float x, float y, float width, float height, Object data) {}
+
+}
@@ -0,0 +1,14 @@
+package me.lauriichan.clay4j;
+
+@FunctionalInterface
+public interface IVirtualItemBuilder {
+
+    /**
+     * Declares the item with the given index as child of the given element.
+     * <p>
+     * Only called for the items of a virtualized container that are visible or close to being visible, the item has to use
+     * the item extent of the container along its layout direction.
+     */
+    void build(Element parent, int index);
+
+}
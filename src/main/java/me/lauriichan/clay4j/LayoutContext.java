@@ -1,16 +1,23 @@
 package me.lauriichan.clay4j;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicReference;
 
-import it.unimi.dsi.fastutil.ints.Int2ObjectArrayMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+import it.unimi.dsi.fastutil.ints.IntHeaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectList;
 import it.unimi.dsi.fastutil.objects.ObjectLists;
 import me.lauriichan.clay4j.IElementConfig.Floating.AttachToElement;
-import me.lauriichan.clay4j.IElementConfig.Floating.PointerCaptureMode;
 import me.lauriichan.clay4j.IElementConfig.Text.WrapMode;
 import me.lauriichan.clay4j.Layout.LayoutDirection;
 import me.lauriichan.clay4j.data.TextElementData;
@@ -22,20 +29,38 @@ public final class LayoutContext {
         private Element element;
         private float x, y;
         private float offsetX, offsetY;
+        // Area in which the children of the element can be seen, only used while culling
+        private float visibleMinX, visibleMinY, visibleMaxX, visibleMaxY;
 
         private boolean visited = false;
 
         public TreeNode(Element element) {
             this.element = element;
-            this.offsetX = element.layout.padding().left();
-            this.offsetY = element.layout.padding().top();
+            this.offsetX = element.descriptor.paddingLeft;
+            this.offsetY = element.descriptor.paddingTop;
             this.x = element.x;
             this.y = element.y;
         }
 
+        void setVisible(float minX, float minY, float maxX, float maxY) {
+            this.visibleMinX = minX;
+            this.visibleMinY = minY;
+            this.visibleMaxX = maxX;
+            this.visibleMaxY = maxY;
+        }
+
+        void clipVisible(BoundingBox box) {
+            setVisible(Math.max(visibleMinX, box.x), Math.max(visibleMinY, box.y), Math.min(visibleMaxX, box.x + box.width),
+                Math.min(visibleMaxY, box.y + box.height));
+        }
+
+        boolean isHidden(float x, float y, float width, float height) {
+            return x > visibleMaxX || y > visibleMaxY || x + width < visibleMinX || y + height < visibleMinY;
+        }
+
     }
 
-    private final class ScrollDataInternal {
+    final class ScrollDataInternal {
 
         Element element;
         String elementId;
@@ -43,13 +68,137 @@ public final class LayoutContext {
         BoundingBox boundingBox;
 
         float contentWidth, contentHeight;
+        // Size of the container in the last layout it was positioned in
+        float width, height;
         float scrollVelocityX, scrollVelocityY;
         float originX, originY;
         float pointerX, pointerY;
         float scrollX, scrollY;
         float time;
 
-        boolean openThisFrame, pointerActive;
+        boolean pointerActive;
+        // If the content size was calculated while positioning, culled containers are measured after the layout
+        boolean positioned;
+        // Generation of the last frame the container was declared in and of the last layout it was part of
+        int declaredGeneration = -1, layoutGeneration = -1;
+
+    }
+
+    /**
+     * Roots which are laid out together, roots of different groups don't depend on each other.
+     */
+    private static final class RootGroup {
+
+        // Roots in declaration and in render order
+        private ObjectArrayList<Element> roots, sortedRoots;
+        private ObjectArrayList<Element> textElements, aspectRatioElements;
+        // Store indices of all elements in ascending order, null if the group contains all elements
+        private IntArrayList indices;
+
+        private final IntArrayList sizingStack = new IntArrayList();
+        private final IntArrayList resizeable = new IntArrayList();
+
+        private final ElementContext context = new ElementContext();
+        private RenderCommandBuffer commands;
+        // Start and end of the commands of each root in render order
+        private final IntArrayList commandRanges = new IntArrayList();
+        private int cursor;
+
+        RootGroup(ObjectArrayList<Element> roots, ObjectArrayList<Element> textElements, ObjectArrayList<Element> aspectRatioElements) {
+            this.roots = roots;
+            this.textElements = textElements;
+            this.aspectRatioElements = aspectRatioElements;
+        }
+
+        RootGroup() {
+            this(new ObjectArrayList<>(), new ObjectArrayList<>(), new ObjectArrayList<>());
+            this.sortedRoots = new ObjectArrayList<>();
+            this.indices = new IntArrayList();
+            this.commands = new RenderCommandBuffer();
+        }
+
+        void clear() {
+            roots.clear();
+            sortedRoots.clear();
+            textElements.clear();
+            aspectRatioElements.clear();
+            indices.clear();
+            commandRanges.clear();
+            cursor = 0;
+        }
+
+    }
+
+    /**
+     * Elements declared for a frame.
+     */
+    private static final class Frame {
+
+        private final ObjectArrayList<Element> roots = new ObjectArrayList<>();
+        private final ObjectArrayList<Element> textElements = new ObjectArrayList<>();
+        private final ObjectArrayList<Element> aspectRatioElements = new ObjectArrayList<>();
+        private Object2ObjectOpenHashMap<String, Element> id2elementMap = new Object2ObjectOpenHashMap<>();
+
+        private final ElementStore store = new ElementStore();
+        private final RootGroup mainGroup = new RootGroup(roots, textElements, aspectRatioElements);
+
+    }
+
+    /**
+     * Sizes the subtree of an element along one axis, the size of the element itself has to be known already.
+     */
+    private final class SizingTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int index;
+        private final boolean xAxis, retained;
+
+        SizingTask(int index, boolean xAxis, boolean retained) {
+            this.index = index;
+            this.xAxis = xAxis;
+            this.retained = retained;
+        }
+
+        @Override
+        protected void compute() {
+            sizeSubtree(index, xAxis, retained, new IntArrayList(), new IntArrayList(), true);
+        }
+
+    }
+
+    @FunctionalInterface
+    private static interface IRangeAction {
+
+        void run(int from, int to);
+
+    }
+
+    /**
+     * Splits a range of independent items until at most {@link LayoutContext#PARALLEL_BATCH_SIZE} are left.
+     */
+    private static final class RangeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient IRangeAction action;
+        private final int from, to;
+
+        RangeTask(IRangeAction action, int from, int to) {
+            this.action = action;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_BATCH_SIZE) {
+                action.run(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeTask(action, from, middle), new RangeTask(action, middle, to));
+        }
 
     }
 
@@ -59,8 +208,10 @@ public final class LayoutContext {
 
         private final ObjectArrayList<MeasuredWord> iWords = new ObjectArrayList<>();
 
+        public final String text;
         public final int textHash, fontId;
         public final float fontSize;
+        public final int letterSpacing;
         public final ObjectList<MeasuredWord> words = ObjectLists.unmodifiable(iWords);
 
         private volatile long lastAccess;
@@ -69,11 +220,16 @@ public final class LayoutContext {
         private float width, height;
         private boolean containsNewLines = false;
 
-        public MeasuredText(long lastAccess, int textHash, int fontId, float fontSize) {
+        // Lines of the last word wrap of this text
+        private TextElementData wrapped;
+
+        public MeasuredText(long lastAccess, String text, int fontId, float fontSize, int letterSpacing) {
             this.lastAccess = lastAccess;
-            this.textHash = textHash;
+            this.text = text;
+            this.textHash = text.hashCode();
             this.fontId = fontId;
             this.fontSize = fontSize;
+            this.letterSpacing = letterSpacing;
         }
 
         public float minWidth() {
@@ -92,32 +248,73 @@ public final class LayoutContext {
             return containsNewLines;
         }
 
+        public boolean matches(String text, int fontId, float fontSize, int letterSpacing) {
+            // Compare the cheap fields first, the text is only compared if everything else matches
+            return this.fontId == fontId && Float.floatToIntBits(this.fontSize) == Float.floatToIntBits(fontSize)
+                && this.letterSpacing == letterSpacing && (this.text == text || (textHash == text.hashCode() && this.text.equals(text)));
+        }
+
         @Override
         public final int hashCode() {
-            return hash(textHash, fontId, fontSize);
+            return hash(textHash, fontId, fontSize, letterSpacing);
+        }
+
+        @Override
+        public final boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            return obj instanceof MeasuredText other && other.matches(text, fontId, fontSize, letterSpacing);
         }
 
-        public static int hash(int textHash, int fontId, float fontSize) {
-            return textHash + (fontId << 8) + (Float.floatToIntBits(fontSize) << 16);
+        public static int hash(int textHash, int fontId, float fontSize, int letterSpacing) {
+            int hash = textHash;
+            hash = 31 * hash + fontId;
+            hash = 31 * hash + Float.floatToIntBits(fontSize);
+            return 31 * hash + letterSpacing;
         }
 
     }
 
-    private static final int TEXT_CACHE_MAX_SIZE = 32;
-    private static final int TEXT_CACHE_MAX_WORD_COUNT = 32;
+    static final float TOLERANCE = 0.01f;
+
+    public static final int DEFAULT_PARALLEL_SIZING_THRESHOLD = 4096;
+    public static final int DEFAULT_PARALLEL_TEXT_THRESHOLD = 256;
 
-    private static final float TOLERANCE = 0.01f;
+    private static final int PARALLEL_BATCH_SIZE = 32;
 
-    private final ObjectArrayList<Element> roots = new ObjectArrayList<>();
-    private final ObjectArrayList<Element> textElements = new ObjectArrayList<>();
-    private final ObjectArrayList<Element> aspectRatioElements = new ObjectArrayList<>();
+    private static final Layout.Padding VIRTUAL_PADDING = new Layout.Padding(0);
 
-    private final Object2ObjectOpenHashMap<String, Element> id2elementMap = new Object2ObjectOpenHashMap<>();
-    private final ObjectArrayList<ScrollDataInternal> scrollDataList = new ObjectArrayList<>();
+    private static final int LAYOUT_DESCRIPTOR_CAPACITY = 4096;
 
-    private final Int2ObjectMap<MeasuredText> textCache = new Int2ObjectArrayMap<>(TEXT_CACHE_MAX_SIZE);
+    // A frame can be declared into one of them while the other one is laid out
+    private final Frame[] frames = {
+        new Frame(),
+        new Frame()
+    };
+    private Frame frame = frames[0];
+    private CompletableFuture<RenderCommandBuffer> pendingLayout;
 
-    private final AtomicReference<ObjectList<RenderCommand>> renderCommands = new AtomicReference<>(ObjectList.of());
+    // Elements of the frame that is laid out, only used by the layout calculation
+    private ObjectArrayList<Element> roots, textElements, aspectRatioElements;
+    private Object2ObjectOpenHashMap<String, Element> id2elementMap;
+    private ElementStore store;
+    private RootGroup mainGroup;
+
+    private Object2ObjectOpenHashMap<String, Element> retainedElements = new Object2ObjectOpenHashMap<>();
+    final ObjectArrayList<ScrollDataInternal> scrollDataList = new ObjectArrayList<>();
+    final Object2ObjectOpenHashMap<String, ScrollDataInternal> scrollDataMap = new Object2ObjectOpenHashMap<>();
+
+    private final TextCache textCache = new TextCache();
+    private volatile WordCache wordCache;
+    // Size of a space per font id and font size
+    private final Long2ObjectOpenHashMap<float[]> spaceSizes = new Long2ObjectOpenHashMap<>();
+
+    private final RenderCommandBuffer[] commandBuffers = {
+        new RenderCommandBuffer(),
+        new RenderCommandBuffer()
+    };
+    private final AtomicReference<RenderCommandBuffer> commandBuffer = new AtomicReference<>(commandBuffers[0]);
 
     private final ObjectArrayList<Element> hovered = new ObjectArrayList<>();
     private final ObjectList<Element> immutableHovered = ObjectLists.unmodifiable(hovered);
@@ -128,6 +325,36 @@ public final class LayoutContext {
     private volatile float layoutWidth, layoutHeight;
     private volatile boolean changed;
 
+    private volatile boolean retainedMode = false;
+    private volatile boolean elementPooling = false;
+    private volatile boolean viewportCulling = false;
+    // Culling state of the layout that is currently calculated
+    private boolean culling;
+    // Generation of the frame that is declared and of the last frame handed to a layout, only used by the declaring thread
+    private int frameGeneration = 0, submittedGeneration = -1;
+    // Generation of the layout that is calculated
+    private int layoutGeneration = 0;
+    private final ElementPool elementPool = new ElementPool();
+    // Interned layouts, only used by the thread that declares the elements
+    private final Object2ObjectOpenHashMap<Layout, LayoutDescriptor> layoutDescriptors = new Object2ObjectOpenHashMap<>();
+    private LayoutDescriptor lastDescriptor;
+    private float retainedLayoutWidth = -1f, retainedLayoutHeight = -1f;
+    private boolean retainedDimensionsChanged = true;
+
+    private volatile ForkJoinPool layoutPool;
+    private volatile int parallelSizingThreshold = DEFAULT_PARALLEL_SIZING_THRESHOLD;
+    private volatile int parallelTextThreshold = DEFAULT_PARALLEL_TEXT_THRESHOLD;
+    private volatile LayoutProfiler profiler;
+    private final ObjectArrayList<RootGroup> groups = new ObjectArrayList<>();
+    private int groupCount = 0;
+    private int[] groupParents = IntArrays.EMPTY_ARRAY, groupIds = IntArrays.EMPTY_ARRAY, rootGroups = IntArrays.EMPTY_ARRAY;
+
+    private final SpatialIndex[] spatialIndices = {
+        new SpatialIndex(this::isInsideClip),
+        new SpatialIndex(this::isInsideClip)
+    };
+    private volatile SpatialIndex spatialIndex = spatialIndices[0];
+
     public LayoutContext() {
         this(0f, 0f);
     }
@@ -135,10 +362,11 @@ public final class LayoutContext {
     public LayoutContext(float layoutWidth, float layoutHeight) {
         this.layoutWidth = layoutWidth;
         this.layoutHeight = layoutHeight;
+        useFrame(frame);
     }
     
     public int rootAmount() {
-        return roots.size();
+        return frame.roots.size();
     }
 
     public float width() {
@@ -159,7 +387,7 @@ public final class LayoutContext {
     }
     
     public Element elementById(String id) {
-        return id2elementMap.get(id);
+        return frame.id2elementMap.get(id);
     }
 
     public float pointerX() {
@@ -184,33 +412,9 @@ public final class LayoutContext {
         hovered.forEach(element -> element.hovered = false);
         hovered.clear();
 
-        ObjectArrayList<Element> stack = new ObjectArrayList<>();
-        for (int i = roots.size() - 1; i >= 0; i--) {
-            Element root = roots.get(i);
-            stack.push(root);
-            boolean found = false;
-            while (!stack.isEmpty()) {
-                Element current = stack.removeLast();
-                ScrollDataInternal scrollData = scrollDataById(current.clipElementId);
-                if (current.boundingBox.isInside(x, y) && (scrollData == null || scrollData.boundingBox.isInside(x, y))) {
-                    if (!hovered.contains(current)) {
-                        hovered.add(current);
-                        current.hovered = true;
-                    }
-                    found = true;
-                }
-                if (current.isText) {
-                    continue;
-                }
-                for (int c = current.children.size() - 1; c >= 0; c--) {
-                    stack.push(current.children.get(c));
-                }
-            }
-
-            if (found && root.isFloating
-                && root.layout.config(IElementConfig.Floating.class).get().captureMode() == PointerCaptureMode.CAPTURE) {
-                break;
-            }
+        spatialIndex.query(x, y, hovered);
+        for (int i = 0; i < hovered.size(); i++) {
+            hovered.get(i).hovered = true;
         }
 
         if (pressed) {
@@ -235,116 +439,129 @@ public final class LayoutContext {
         int highestPriority = -1;
         ScrollDataInternal highestPriorityData = null;
         boolean scrollOccurred = scrollDeltaX != 0f || scrollDeltaY != 0f;
-        for (int i = 0; i < scrollDataList.size(); i++) {
-            ScrollDataInternal scrollData = scrollDataList.get(i);
-            if (!scrollData.openThisFrame) {
-                scrollDataList.remove(i--);
-                continue;
-            }
-            scrollData.openThisFrame = false;
-            if (!id2elementMap.containsKey(scrollData.elementId)) {
-                scrollDataList.remove(i--);
-                continue;
-            }
-
-            if (!isPointerActive && scrollData.pointerActive) {
-                float xDiff = scrollData.scrollX - scrollData.originX;
-                if (xDiff < -10 || xDiff > 10) {
-                    scrollData.scrollVelocityX = (scrollData.scrollX - scrollData.originX) / (scrollData.time * 25);
+        // Scroll data is also read while the layout is calculated
+        synchronized (scrollDataMap) {
+            int size = 0;
+            for (int i = 0; i < scrollDataList.size(); i++) {
+                ScrollDataInternal scrollData = scrollDataList.get(i);
+                // Containers of the last submitted frame are kept, even while that frame is still laid out
+                if (scrollData.declaredGeneration < submittedGeneration) {
+                    scrollDataMap.remove(scrollData.elementId);
+                    continue;
                 }
-                float yDiff = scrollData.scrollY - scrollData.originY;
-                if (yDiff < -10 || yDiff > 10) {
-                    scrollData.scrollVelocityY = (scrollData.scrollY - scrollData.originY) / (scrollData.time * 25);
+                // Keep the order of the remaining containers, later ones win on equal priority
+                scrollDataList.set(size++, scrollData);
+                if (scrollData.element == null || scrollData.boundingBox == null) {
+                    // Not laid out yet
+                    continue;
                 }
-                scrollData.pointerActive = false;
 
-                scrollData.pointerX = scrollData.pointerY = 0f;
-                scrollData.originX = scrollData.originY = 0f;
-                scrollData.time = 0;
-            }
+                if (!isPointerActive && scrollData.pointerActive) {
+                    float xDiff = scrollData.scrollX - scrollData.originX;
+                    if (xDiff < -10 || xDiff > 10) {
+                        scrollData.scrollVelocityX = (scrollData.scrollX - scrollData.originX) / (scrollData.time * 25);
+                    }
+                    float yDiff = scrollData.scrollY - scrollData.originY;
+                    if (yDiff < -10 || yDiff > 10) {
+                        scrollData.scrollVelocityY = (scrollData.scrollY - scrollData.originY) / (scrollData.time * 25);
+                    }
+                    scrollData.pointerActive = false;
 
-            scrollData.scrollX += scrollData.scrollVelocityX;
-            scrollData.scrollVelocityX *= 0.95f;
-            if ((scrollData.scrollVelocityX > -0.1f && scrollData.scrollVelocityX < 0.1f) || scrollOccurred) {
-                scrollData.scrollVelocityX = 0;
-            }
-            scrollData.scrollX = Math.min(Math.max(scrollData.scrollX, -Math.max(scrollData.contentWidth - scrollData.element.width, 0)),
-                0);
+                    scrollData.pointerX = scrollData.pointerY = 0f;
+                    scrollData.originX = scrollData.originY = 0f;
+                    scrollData.time = 0;
+                }
 
-            scrollData.scrollY += scrollData.scrollVelocityY;
-            scrollData.scrollVelocityY *= 0.95f;
-            if ((scrollData.scrollVelocityY > -0.1f && scrollData.scrollVelocityY < 0.1f) || scrollOccurred) {
-                scrollData.scrollVelocityY = 0;
-            }
-            scrollData.scrollY = Math.min(Math.max(scrollData.scrollY, -Math.max(scrollData.contentHeight - scrollData.element.height, 0)),
-                0);
+                scrollData.scrollX += scrollData.scrollVelocityX;
+                scrollData.scrollVelocityX *= 0.95f;
+                if ((scrollData.scrollVelocityX > -0.1f && scrollData.scrollVelocityX < 0.1f) || scrollOccurred) {
+                    scrollData.scrollVelocityX = 0;
+                }
+                scrollData.scrollX = Math.min(Math.max(scrollData.scrollX, -Math.max(scrollData.contentWidth - scrollData.width, 0)),
+                    0);
 
-            for (int j = 0; j < hovered.size(); j++) {
-                if (scrollData.element != hovered.get(i)) {
-                    continue;
+                scrollData.scrollY += scrollData.scrollVelocityY;
+                scrollData.scrollVelocityY *= 0.95f;
+                if ((scrollData.scrollVelocityY > -0.1f && scrollData.scrollVelocityY < 0.1f) || scrollOccurred) {
+                    scrollData.scrollVelocityY = 0;
+                }
+                scrollData.scrollY = Math.min(
+                    Math.max(scrollData.scrollY, -Math.max(scrollData.contentHeight - scrollData.height, 0)), 0);
+
+                // Hovered elements belong to the last finished layout, which can be older than the element of the scroll data
+                for (int j = 0; j < hovered.size(); j++) {
+                    if (!scrollData.elementId.equals(hovered.get(j).elementId)) {
+                        continue;
+                    }
+                    highestPriority = j;
+                    highestPriorityData = scrollData;
                 }
-                highestPriority = j;
-                highestPriorityData = scrollData;
+            }
+            scrollDataList.size(size);
+
+            if (highestPriority > -1 && highestPriorityData != null) {
+                scrollHighestPriority(highestPriorityData, isPointerActive, scrollDeltaX, scrollDeltaY, deltaTime);
             }
         }
+    }
 
-        if (highestPriority > -1 && highestPriorityData != null) {
-            Element scrollElement = highestPriorityData.element;
-            boolean canScrollVertically = scrollElement.clipsVertical && highestPriorityData.contentHeight > scrollElement.height;
-            boolean canScrollHorizontal = scrollElement.clipsHorizontal && highestPriorityData.contentWidth > scrollElement.width;
+    private void scrollHighestPriority(ScrollDataInternal highestPriorityData, boolean isPointerActive, float scrollDeltaX,
+        float scrollDeltaY, float deltaTime) {
+        Element scrollElement = highestPriorityData.element;
+        boolean canScrollVertically = scrollElement.clipsVertical && highestPriorityData.contentHeight > highestPriorityData.height;
+        boolean canScrollHorizontal = scrollElement.clipsHorizontal && highestPriorityData.contentWidth > highestPriorityData.width;
 
-            if (canScrollVertically) {
-                highestPriorityData.scrollY = highestPriorityData.scrollY + scrollDeltaY * 10;
-            }
-            if (canScrollHorizontal) {
-                highestPriorityData.scrollX = highestPriorityData.scrollX + scrollDeltaX * 10;
-            }
+        if (canScrollVertically) {
+            highestPriorityData.scrollY = highestPriorityData.scrollY + scrollDeltaY * 10;
+        }
+        if (canScrollHorizontal) {
+            highestPriorityData.scrollX = highestPriorityData.scrollX + scrollDeltaX * 10;
+        }
 
-            if (isPointerActive) {
-                highestPriorityData.scrollVelocityX = 0f;
-                highestPriorityData.scrollVelocityY = 0f;
-                if (!highestPriorityData.pointerActive) {
+        if (isPointerActive) {
+            highestPriorityData.scrollVelocityX = 0f;
+            highestPriorityData.scrollVelocityY = 0f;
+            if (!highestPriorityData.pointerActive) {
+                highestPriorityData.pointerX = pointerX;
+                highestPriorityData.pointerY = pointerY;
+                highestPriorityData.originX = highestPriorityData.scrollX;
+                highestPriorityData.originY = highestPriorityData.scrollY;
+                highestPriorityData.pointerActive = true;
+            } else {
+                float deltaX = 0f, deltaY = 0f;
+                if (canScrollHorizontal) {
+                    float oldScrollPos = highestPriorityData.scrollX;
+                    highestPriorityData.scrollX = highestPriorityData.originX + (pointerX - highestPriorityData.pointerX);
+                    highestPriorityData.scrollX = Math.max(Math.min(highestPriorityData.scrollX, 0),
+                        -(highestPriorityData.contentWidth - highestPriorityData.width));
+                    deltaX = highestPriorityData.scrollX - oldScrollPos;
+                }
+                if (canScrollVertically) {
+                    float oldScrollPos = highestPriorityData.scrollY;
+                    highestPriorityData.scrollY = highestPriorityData.originY + (pointerY - highestPriorityData.pointerY);
+                    highestPriorityData.scrollY = Math.max(Math.min(highestPriorityData.scrollY, 0),
+                        -(highestPriorityData.contentHeight - highestPriorityData.height));
+                    deltaY = highestPriorityData.scrollY - oldScrollPos;
+                }
+                if (deltaX > -0.1f && deltaX < 0.1f && deltaY > -0.1f && deltaY < 0.1f && highestPriorityData.time > 0.15f) {
+                    highestPriorityData.time = 0f;
                     highestPriorityData.pointerX = pointerX;
                     highestPriorityData.pointerY = pointerY;
                     highestPriorityData.originX = highestPriorityData.scrollX;
                     highestPriorityData.originY = highestPriorityData.scrollY;
-                    highestPriorityData.pointerActive = true;
                 } else {
-                    float deltaX = 0f, deltaY = 0f;
-                    if (canScrollHorizontal) {
-                        float oldScrollPos = highestPriorityData.scrollX;
-                        highestPriorityData.scrollX = highestPriorityData.originX + (pointerX - highestPriorityData.pointerX);
-                        highestPriorityData.scrollX = Math.max(Math.min(highestPriorityData.scrollX, 0),
-                            -(highestPriorityData.contentWidth - highestPriorityData.boundingBox.width));
-                        deltaX = highestPriorityData.scrollX - oldScrollPos;
-                    }
-                    if (canScrollVertically) {
-                        float oldScrollPos = highestPriorityData.scrollY;
-                        highestPriorityData.scrollY = highestPriorityData.originY + (pointerY - highestPriorityData.pointerY);
-                        highestPriorityData.scrollY = Math.max(Math.min(highestPriorityData.scrollY, 0),
-                            -(highestPriorityData.contentHeight - highestPriorityData.boundingBox.height));
-                        deltaY = highestPriorityData.scrollY - oldScrollPos;
-                    }
-                    if (deltaX > -0.1f && deltaX < 0.1f && deltaY > -0.1f && deltaY < 0.1f && highestPriorityData.time > 0.15f) {
-                        highestPriorityData.time = 0f;
-                        highestPriorityData.pointerX = pointerX;
-                        highestPriorityData.pointerY = pointerY;
-                        highestPriorityData.originX = highestPriorityData.scrollX;
-                        highestPriorityData.originY = highestPriorityData.scrollY;
-                    } else {
-                        highestPriorityData.time += deltaTime;
-                    }
+                    highestPriorityData.time += deltaTime;
                 }
             }
+        }
 
-            if (canScrollVertically) {
-                highestPriorityData.scrollY = Math.max(Math.min(highestPriorityData.scrollY, 0),
-                    -(highestPriorityData.contentHeight - scrollElement.height));
-            }
-            if (canScrollHorizontal) {
-                highestPriorityData.scrollX = Math.max(Math.min(highestPriorityData.scrollX, 0),
-                    -(highestPriorityData.contentWidth - scrollElement.width));
-            }
+        if (canScrollVertically) {
+            highestPriorityData.scrollY = Math.max(Math.min(highestPriorityData.scrollY, 0),
+                -(highestPriorityData.contentHeight - highestPriorityData.height));
+        }
+        if (canScrollHorizontal) {
+            highestPriorityData.scrollX = Math.max(Math.min(highestPriorityData.scrollX, 0),
+                -(highestPriorityData.contentWidth - highestPriorityData.width));
         }
     }
 
@@ -352,459 +569,1462 @@ public final class LayoutContext {
         return changed;
     }
 
-    public ObjectList<RenderCommand> renderCommands() {
-        return renderCommands.get();
+    /**
+     * In retained mode an element that is declared with the same elementId, parent and an equal layout as in the last frame
+     * reuses the element of the last frame. Roots which didn't change at all skip the layout passes and reuse the render
+     * commands of the last frame.
+     */
+    public void setRetainedMode(boolean retainedMode) {
+        if (this.retainedMode == retainedMode) {
+            return;
+        }
+        this.retainedMode = retainedMode;
+        retainedElements.clear();
+        changed = true;
     }
 
-    public void reset() {
-        roots.clear();
-        textElements.clear();
-        aspectRatioElements.clear();
-        id2elementMap.clear();
-        scrollDataList.forEach(data -> data.element = null);
-        changed = true;
+    public boolean isRetainedMode() {
+        return retainedMode;
     }
 
-    public Element.Builder newRoot() {
-        return Element.builder(this);
+    /**
+     * Enables reusing the elements of old frames when new elements are declared, which is disabled by default.
+     * <p>
+     * Elements of a frame are reused once its render commands were replaced twice, references to elements (by id, hovered
+     * elements or render commands) must not be kept for longer than that. The bounding box and the text data of an element are
+     * reused together with it, so a box keeps the geometry of its layout for as long as the commands of the layout are valid.
+     * Retained mode already reuses elements, so no elements are pooled in retained mode.
+     */
+    public void setElementPooling(boolean elementPooling) {
+        this.elementPooling = elementPooling;
+        if (!elementPooling) {
+            elementPool.clear();
+        }
     }
 
-    public boolean isOffscreen(BoundingBox boundingBox) {
-        return isOffscreen(boundingBox.x, boundingBox.y, boundingBox.width, boundingBox.height);
+    public boolean isElementPooling() {
+        return elementPooling;
     }
 
-    public boolean isOffscreen(float x, float y, float width, float height) {
-        return x > layoutWidth || y > layoutHeight || x + width < 0 || y + height < 0;
+    /**
+     * Sets if subtrees that can't be seen are skipped while the render commands are built.
+     * <p>
+     * A subtree is skipped if all of it is drawn inside of the bounds of its first element and these bounds are outside of the
+     * layout or of the clipping elements around it. Skipped elements don't build any commands and can't be hovered, their
+     * bounding boxes are only calculated if a floating element is attached to one of them. In retained mode only subtrees
+     * outside of the layout are skipped, as the commands of unchanged elements are reused no matter where they are clipped.
+     */
+    public void setViewportCulling(boolean viewportCulling) {
+        this.viewportCulling = viewportCulling;
+        // Retained commands could be missing elements that were culled
+        retainedLayoutWidth = retainedLayoutHeight = -1f;
     }
 
-    public void calculateLayout() {
-        changed = false;
-        
-        // Size along x-axis
-        sizeContainersAlongAxis(true);
-        // Wrap text
-        wrapText();
-        // Scale vertical heights according to aspect ratio
-        scaleAspectVertical();
-        // Propergate effects of text wrapping, aspect scaling etc. on height of parents
-        propergateVerticalEffects();
-        // Size along y-axis
-        sizeContainersAlongAxis(false);
-        // Scale horizontal widths according to aspect ratio
-        scaleAspectHorizontal();
+    public boolean isViewportCulling() {
+        return viewportCulling;
+    }
 
-        // Sort roots by z-index
-        ObjectArrayList<Element> sortedRoots = new ObjectArrayList<>();
-        sortedRoots.addAll(roots);
-        sortedRoots.sort((e1, e2) -> Integer.compare(e1.zIndex, e2.zIndex));
+    /**
+     * The cache of measured texts, its capacity and word budget can be changed at any time.
+     */
+    public TextCache textCache() {
+        return textCache;
+    }
 
-        // Calculate final positions
-        ObjectArrayList<RenderCommand> renderCommands = new ObjectArrayList<>();
-        ElementContext context = new ElementContext(layoutWidth, layoutHeight, renderCommands::push);
-        for (Element root : sortedRoots) {
-            root.x = root.y = 0f;
-            if (root.isFloating) {
-                IElementConfig.Floating config = root.layout.config(IElementConfig.Floating.class).get();
-                if (config.attachTo() == AttachToElement.ATTACH_TO_PARENT && root.parent != null) {
-                    Element attachElement = targetOfFloating(root, config);
-                    if (attachElement != null && attachElement.boundingBox != null) {
-                        BoundingBox attachBox = attachElement.boundingBox;
-                        switch (config.parent()) {
-                        case TOP_LEFT:
-                        case CENTER_LEFT:
-                        case BOTTOM_LEFT:
-                            root.x = attachBox.x();
-                            break;
-                        case TOP_CENTER:
-                        case CENTER_CENTER:
-                        case BOTTOM_CENTER:
-                            root.x = attachBox.x() + (attachBox.width() / 2);
-                            break;
-                        case TOP_RIGHT:
-                        case CENTER_RIGHT:
-                        case BOTTOM_RIGHT:
-                            root.x = attachBox.x() + attachBox.width();
-                            break;
-                        }
-                        switch (config.element()) {
-                        case TOP_LEFT:
-                        case CENTER_LEFT:
-                        case BOTTOM_LEFT:
-                            break;
-                        case TOP_CENTER:
-                        case CENTER_CENTER:
-                        case BOTTOM_CENTER:
-                            root.x -= root.width / 2;
-                            break;
-                        case TOP_RIGHT:
-                        case CENTER_RIGHT:
-                        case BOTTOM_RIGHT:
-                            root.x -= root.width;
-                            break;
-                        }
-                        switch (config.parent()) {
-                        case TOP_LEFT:
-                        case TOP_CENTER:
-                        case TOP_RIGHT:
-                            root.y = attachBox.y();
-                            break;
-                        case CENTER_LEFT:
-                        case CENTER_CENTER:
-                        case CENTER_RIGHT:
-                            root.y = attachBox.y() + (attachBox.height() / 2);
-                            break;
-                        case BOTTOM_LEFT:
-                        case BOTTOM_CENTER:
-                        case BOTTOM_RIGHT:
-                            root.y = attachBox.y() + attachBox.height();
-                            break;
-                        }
-                        switch (config.element()) {
-                        case TOP_LEFT:
-                        case TOP_CENTER:
-                        case TOP_RIGHT:
-                            break;
-                        case CENTER_LEFT:
-                        case CENTER_CENTER:
-                        case CENTER_RIGHT:
-                            root.y -= root.height / 2;
-                            break;
-                        case BOTTOM_LEFT:
-                        case BOTTOM_CENTER:
-                        case BOTTOM_RIGHT:
-                            root.y -= root.height;
-                            break;
-                        }
-                    }
-                }
-            }
-            boolean rootHasToBeClosed = false;
-            if (root.clipElementId != null && (root.clipsHorizontal || root.clipsVertical)) {
-                Element element = id2elementMap.get(root.clipElementId);
-                if (element != null && element.boundingBox != null) {
-                    rootHasToBeClosed = true;
-                    renderCommands.add(new RenderCommand(RenderCommand.CLIPPING_START_ID, root, element.boundingBox));
-                }
-            }
-            context.zIndex = root.zIndex;
-            ObjectArrayList<TreeNode> nodes = new ObjectArrayList<>();
-            nodes.push(new TreeNode(root));
-            while (!nodes.isEmpty()) {
-                TreeNode node = nodes.getLast();
-                Element element = node.element;
-                float scrollOffsetX = 0f, scrollOffsetY = 0f;
-
-                if (!node.visited) {
-                    node.visited = true;
-
-                    BoundingBox elementBox = new BoundingBox(node.x, node.y, element.width, element.height);
-                    if (element.isFloating) {
-                        IElementConfig.Floating floating = element.layout.config(IElementConfig.Floating.class).orElse(null);
-                        elementBox.x -= floating.expandWidth();
-                        elementBox.width += floating.expandWidth() * 2;
-                        elementBox.y -= floating.expandHeight();
-                        elementBox.height += floating.expandHeight() * 2;
-                    }
-                    element.boundingBox = elementBox;
+    /**
+     * Sets a word cache which can be shared with other contexts, words are measured by the font directly if this is null.
+     */
+    public void setWordCache(WordCache wordCache) {
+        this.wordCache = wordCache;
+    }
 
-                    ScrollDataInternal scrollData = null;
-                    if (element.elementId != null && (element.clipsHorizontal || element.clipsVertical)) {
-                        IElementConfig.Clip clip = element.layout.config(IElementConfig.Clip.class).orElse(null);
-                        scrollData = scrollDataById(element.elementId);
-                        scrollData.boundingBox = elementBox;
-                        scrollOffsetX = clip.xChildOffset();
-                        scrollOffsetY = clip.yChildOffset();
-                    }
+    public WordCache wordCache() {
+        return wordCache;
+    }
 
-                    context.emitRectangle = element.layout.renderBackground();
-                    context.offscreen = context.isOffscreen(elementBox);
-                    context.boundingBox = elementBox;
-                    int currentIndex = renderCommands.size();
-                    for (IElementConfig config : element.layout.configs()) {
-                        config.buildOpenCommands(context, element, config);
-                    }
+    /**
+     * Sets the profiler that records the passes of every calculated layout, nothing is recorded if this is null.
+     */
+    public void setProfiler(LayoutProfiler profiler) {
+        this.profiler = profiler;
+    }
 
-                    if (context.emitRectangle) {
-                        renderCommands.add(currentIndex, new RenderCommand(RenderCommand.BACKGROUND_RECTANGLE_RENDERER_ID, context.zIndex, element, elementBox));
-                    }
+    public LayoutProfiler profiler() {
+        return profiler;
+    }
 
-                    if (!element.isText) {
-                        float contentWidth = 0, contentHeight = 0;
-                        if (element.layout.layoutDirection() == LayoutDirection.LEFT_TO_RIGHT) {
-                            for (int i = 0; i < element.children.size(); i++) {
-                                Element child = element.children.get(i);
-                                contentWidth += child.width;
-                                contentHeight = Math.max(contentHeight, child.height);
-                            }
-                            contentWidth += Math.max(0, element.children.size() - 1) * element.layout.childGap();
-                            float extraSpace = element.width - (element.layout.padding().left() + element.layout.padding().right() + contentWidth);
-                            switch (element.layout.childHorizontalAlignment()) {
-                            case LEFT:
-                                extraSpace = 0f;
-                                break;
-                            case CENTER:
-                                extraSpace /= 2f;
-                                break;
-                            default:
-                                break;
-                            }
-                            extraSpace = Math.max(0, extraSpace);
-                            node.offsetX += extraSpace;
-                        } else {
-                            for (int i = 0; i < element.children.size(); i++) {
-                                Element child = element.children.get(i);
-                                contentHeight += child.height;
-                                contentWidth = Math.max(contentWidth, child.width);
-                            }
-                            contentHeight += Math.max(0, element.children.size() - 1) * element.layout.childGap();
-                            float extraSpace = element.height - (element.layout.padding().top() + element.layout.padding().bottom() + contentHeight);
-                            switch (element.layout.childVerticalAlignment()) {
-                            case TOP:
-                                extraSpace = 0f;
-                                break;
-                            case CENTER:
-                                extraSpace /= 2f;
-                                break;
-                            default:
-                                break;
-                            }
-                            extraSpace = Math.max(0, extraSpace);
-                            node.offsetY += extraSpace;
-                        }
+    /**
+     * Sets the pool used to lay out independent roots in parallel, everything is laid out on the calling thread if this is
+     * null.
+     * <p>
+     * Roots are independent unless one of them is floating and attached to an element of the other one, or clipped by it.
+     * While the layout is calculated in parallel fonts and custom element configs are used from multiple threads.
+     */
+    public void setLayoutPool(ForkJoinPool layoutPool) {
+        this.layoutPool = layoutPool;
+    }
 
-                        if (scrollData != null) {
-                            scrollData.contentWidth = contentWidth + element.layout.padding().left() + element.layout.padding().right();
-                            scrollData.contentHeight = contentHeight + element.layout.padding().top() + element.layout.padding().bottom();
-                        }
-                    }
-                } else {
-                    context.emitRectangle = element.layout.renderBackground();
-                    context.offscreen = context.isOffscreen(element.boundingBox);
-                    context.boundingBox = element.boundingBox;
-                    context.emitRectangle = false;
-                    
-                    if (element.elementId != null && (element.clipsHorizontal || element.clipsVertical)) {
-                        IElementConfig.Clip clip = element.layout.config(IElementConfig.Clip.class).orElse(null);
-                        scrollOffsetX = clip.xChildOffset();
-                        scrollOffsetY = clip.yChildOffset();
-                    }
-                    
-                    // We go reverse order here
-                    List<IElementConfig> configs = element.layout.configs();
-                    IElementConfig config;
-                    for (int index = configs.size() - 1; index >= 0; index--) {
-                        config = configs.get(index);
-                        config.buildCloseCommands(context, element, config);
-                    }
+    public ForkJoinPool layoutPool() {
+        return layoutPool;
+    }
 
-                    nodes.removeLast();
-                    continue;
-                }
+    /**
+     * Sets the amount of elements a subtree needs to have to be sized on multiple threads of the layout pool, the result is
+     * the same as sizing it on a single thread.
+     */
+    public void setParallelSizingThreshold(int parallelSizingThreshold) {
+        if (parallelSizingThreshold < 1) {
+            throw new IllegalArgumentException("Threshold has to be positive");
+        }
+        this.parallelSizingThreshold = parallelSizingThreshold;
+    }
 
-                for (int childIndex = 0; childIndex < element.children.size(); childIndex++) {
-                    Element child = element.children.get(childIndex);
-                    if (element.layout.layoutDirection() == LayoutDirection.LEFT_TO_RIGHT) {
-                        node.offsetY = element.layout.padding().top();
-                        float whiteSpaceAroundChild = element.height - (element.layout.padding().top() + element.layout.padding().bottom())
-                            - child.height;
-                        switch (element.layout.childVerticalAlignment()) {
-                        default:
-                            break;
-                        case CENTER:
-                            node.offsetY += whiteSpaceAroundChild / 2f;
-                            break;
-                        case BOTTOM:
-                            node.offsetY += whiteSpaceAroundChild;
-                            break;
-                        }
-                    } else {
-                        node.offsetX = element.layout.padding().left();
-                        float whiteSpaceAroundChild = element.width - (element.layout.padding().left() + element.layout.padding().right())
-                            - child.width;
-                        switch (element.layout.childHorizontalAlignment()) {
-                        default:
-                            break;
-                        case CENTER:
-                            node.offsetX += whiteSpaceAroundChild / 2f;
-                            break;
-                        case RIGHT:
-                            node.offsetX += whiteSpaceAroundChild;
-                            break;
-                        }
-                    }
+    public int parallelSizingThreshold() {
+        return parallelSizingThreshold;
+    }
 
-                    TreeNode childNode = new TreeNode(child);
-                    childNode.x = node.x + node.offsetX + scrollOffsetX;
-                    childNode.y = node.y + node.offsetY + scrollOffsetY;
-                    nodes.add(nodes.size() - childIndex, childNode);
-
-                    if (element.layout.layoutDirection() == LayoutDirection.LEFT_TO_RIGHT) {
-                        node.offsetX += child.width + element.layout.childGap();
-                    } else {
-                        node.offsetY += child.height + element.layout.childGap();
-                    }
-                }
-            }
+    /**
+     * Sets the amount of text elements a frame needs to have to wrap them on multiple threads of the layout pool, this is also
+     * used by {@link #measureTexts(List)}.
+     */
+    public void setParallelTextThreshold(int parallelTextThreshold) {
+        if (parallelTextThreshold < 1) {
+            throw new IllegalArgumentException("Threshold has to be positive");
+        }
+        this.parallelTextThreshold = parallelTextThreshold;
+    }
 
-            if (rootHasToBeClosed) {
-                renderCommands.push(new RenderCommand(RenderCommand.CLIPPING_END_ID, root, root.boundingBox));
+    public int parallelTextThreshold() {
+        return parallelTextThreshold;
+    }
+
+    /**
+     * Measures the given texts and puts them into the text cache, on multiple threads of the layout pool if there are enough
+     * of them.
+     * <p>
+     * Texts are otherwise measured when their element is declared, measuring them up front moves that work off the declaring
+     * thread. The text cache has to be large enough to hold all of them.
+     */
+    public void measureTexts(List<IElementConfig.Text> configs) {
+        long time = System.currentTimeMillis();
+        ForkJoinPool pool = layoutPool;
+        if (pool == null || configs.size() < parallelTextThreshold) {
+            for (int i = 0; i < configs.size(); i++) {
+                measuredText(time, configs.get(i));
             }
+            return;
+        }
+        runParallel(pool, configs.size(), (from, to) -> {
+            for (int i = from; i < to; i++) {
+                measuredText(time, configs.get(i));
+            }
+        });
+    }
 
+    private void runParallel(ForkJoinPool pool, int size, IRangeAction action) {
+        RangeTask task = new RangeTask(action, 0, size);
+        if (ForkJoinTask.getPool() == pool) {
+            task.invoke();
+        } else {
+            pool.invoke(task);
         }
-        this.renderCommands.set(renderCommands);
     }
 
-    /*
-     * Internal functions
+    /**
+     * The render commands of the last calculated layout, the buffer is reused after the layout was calculated twice.
      */
+    public RenderCommandBuffer commandBuffer() {
+        return commandBuffer.get();
+    }
 
-    void addElement(Element element) {
-        boolean changed = false;
-        if (element.isText) {
-            textElements.add(element);
-            changed = true;
-        }
-        if (element.hasAspectRatio) {
-            aspectRatioElements.add(element);
-            changed = true;
-        }
-        if (element.parent == null || element.isFloating) {
-            roots.add(element);
-            changed = true;
+    public ObjectList<RenderCommand> renderCommands() {
+        return commandBuffer.get().asList();
+    }
+
+    public void reset() {
+        Frame frame = this.frame;
+        if (elementPooling && !retainedMode) {
+            elementPool.retire(frame.store, commandBuffer.get().generation());
         }
-        IElementConfig.Clip clip = element.layout.config(IElementConfig.Clip.class).orElse(null);
-        if (clip != null && element.elementId != null) {
-            ScrollDataInternal data = scrollDataById(element.elementId);
-            if (data == null) {
-                data = new ScrollDataInternal();
-                data.elementId = element.elementId;
-                data.originX = data.originY = -1f;
-            }
-            data.element = element;
-            data.openThisFrame = true;
-            changed = true;
+        frame.roots.clear();
+        frame.textElements.clear();
+        frame.aspectRatioElements.clear();
+        frame.store.clear();
+        if (retainedMode) {
+            Object2ObjectOpenHashMap<String, Element> map = retainedElements;
+            retainedElements = frame.id2elementMap;
+            frame.id2elementMap = map;
         }
+        frame.id2elementMap.clear();
+        changed = true;
+    }
 
-        if (changed) {
-            this.changed = true;
-        }
+    public Element.Builder newRoot() {
+        return Element.builder(this);
     }
 
-    void setElementId(String elementId, Element element) {
-        if (elementId == null) {
-            return;
-        }
-        if (id2elementMap.containsKey(elementId)) {
-            throw new IllegalArgumentException("Attachment id '%s' is already in use.".formatted(elementId));
-        }
-        id2elementMap.put(elementId, element);
+    public boolean isOffscreen(BoundingBox boundingBox) {
+        return isOffscreen(boundingBox.x, boundingBox.y, boundingBox.width, boundingBox.height);
     }
 
-    /*
-     * Layout calculations
+    public boolean isOffscreen(float x, float y, float width, float height) {
+        return x > layoutWidth || y > layoutHeight || x + width < 0 || y + height < 0;
+    }
+
+    public void calculateLayout() {
+        awaitLayout();
+        changed = false;
+        submittedGeneration = frameGeneration++;
+        calculateLayout(frame, layoutWidth, layoutHeight);
+    }
+
+    /**
+     * Calculates the layout and passes the resulting render commands to the visitor in order.
+     * <p>
+     * Background rectangles are inserted in front of the commands of their element and roots positioned in parallel are
+     * merged after positioning, so the commands are passed once the layout is complete.
      */
+    public void calculateLayout(IRenderCommandVisitor visitor) {
+        calculateLayout();
+        commandBuffer.get().accept(visitor);
+    }
 
-    private void wrapText() {
-        long time = System.currentTimeMillis();
-        float[] tmpSize = new float[2];
-        for (Element textElement : textElements) {
-            IElementConfig.Text config = textElement.layout.config(IElementConfig.Text.class).get();
-            TextElementData textData = textElement.data(TextElementData.class).get();
-            textData.reset();
-            MeasuredText measured = measuredText(time, config);
-            if (config.wrapMode() == WrapMode.WRAP_NONE || (config.wrapMode() == WrapMode.WRAP_NEWLINES && !measured.containsNewLines())
-                || (!measured.containsNewLines() && textData.preferredWidth <= textElement.width)) {
-                textData.add(new TextElementData.Line(Math.min(textElement.width, measured.width()), Math.max(textElement.height, measured.height()), config.text()));
-                continue;
-            }
-            float lineWidth = 0, lineHeight = config.lineHeight() > 0 ? config.lineHeight() : textData.preferredHeight;
-            int lineLength = 0, lineStartOffset = 0;
-            String text = config.text();
-            config.font().calculateSize(" ", config.fontSize(), tmpSize);
-            float spaceWidth = tmpSize[0];
-            MeasuredWord word;
-            for (int i = 0; i < measured.words.size(); i++) {
-                word = measured.words.get(i);
-                if (lineLength == 0 && lineWidth + word.width() > textElement.width) {
-                    textData.add(
-                        new TextElementData.Line(word.width(), lineHeight, text.substring(word.start(), word.start() + word.length())));
-                    lineStartOffset = word.start() + word.length();
-                } else if (word.length() == 0 || lineWidth + word.width() > textElement.width) {
-                    boolean finalCharIsSpace = text.charAt(lineStartOffset + lineLength - 1) == ' ';
-                    textData.add(new TextElementData.Line(lineWidth + (finalCharIsSpace ? -spaceWidth : 0), lineHeight,
-                        text.substring(lineStartOffset, lineStartOffset + lineLength + (finalCharIsSpace ? -1 : 0))));
-                    if (lineLength != 0 && word.length() != 0) {
-                        i--; // We go back by one
-                    }
-                    lineWidth = 0;
-                    lineLength = 0;
-                    lineStartOffset = word.start();
-                } else {
-                    lineWidth += word.width() + config.letterSpacing();
-                    lineLength += word.length();
-                }
-            }
-            if (lineLength > 0) {
-                textData.add(new TextElementData.Line(lineWidth - config.letterSpacing(), lineHeight,
-                    text.substring(lineStartOffset, lineStartOffset + lineLength)));
-            }
-            textElement.height = lineHeight * textData.lines.size();
+    /**
+     * Calculates the layout of the declared elements on the given executor, while the next frame is declared.
+     * <p>
+     * Elements are declared into one of two frames, this hands the current one over to the layout and switches to the other
+     * one, which still contains the elements of the last calculated layout until {@link #reset()} is called. Only one layout is
+     * calculated at a time, so this waits for the last one to finish first. The render commands of a finished layout are
+     * published through {@link #commandBuffer()} as usual.
+     * <p>
+     * Retained elements are reused while they are declared, so this can't be used in retained mode.
+     */
+    public CompletableFuture<RenderCommandBuffer> calculateLayoutAsync(Executor executor) {
+        if (retainedMode) {
+            throw new IllegalStateException("The layout of retained elements can't be calculated asynchronously");
         }
+        awaitLayout();
+        changed = false;
+        submittedGeneration = frameGeneration++;
+        Frame frame = this.frame;
+        this.frame = frame == frames[0] ? frames[1] : frames[0];
+        // The dimensions can change while the layout is calculated
+        float layoutWidth = this.layoutWidth, layoutHeight = this.layoutHeight;
+        CompletableFuture<RenderCommandBuffer> layout = CompletableFuture.supplyAsync(() -> {
+            calculateLayout(frame, layoutWidth, layoutHeight);
+            return commandBuffer.get();
+        }, executor);
+        pendingLayout = layout;
+        return layout;
     }
 
-    private void scaleAspectVertical() {
-        IElementConfig.AspectRatio config;
-        for (Element element : aspectRatioElements) {
-            config = element.layout.config(IElementConfig.AspectRatio.class).get();
-            element.height = (1 / config.aspectRatio()) * element.width;
-            element.minHeight = element.height;
+    /**
+     * Waits until the layout started by {@link #calculateLayoutAsync(Executor)} is calculated, does nothing if there is none.
+     */
+    public void awaitLayout() {
+        CompletableFuture<RenderCommandBuffer> layout = pendingLayout;
+        if (layout == null) {
+            return;
         }
+        pendingLayout = null;
+        layout.join();
     }
 
-    private void scaleAspectHorizontal() {
-        IElementConfig.AspectRatio config;
-        for (Element element : aspectRatioElements) {
-            config = element.layout.config(IElementConfig.AspectRatio.class).get();
-            element.width = config.aspectRatio() * element.height;
-        }
+    private void useFrame(Frame frame) {
+        this.roots = frame.roots;
+        this.textElements = frame.textElements;
+        this.aspectRatioElements = frame.aspectRatioElements;
+        this.id2elementMap = frame.id2elementMap;
+        this.store = frame.store;
+        this.mainGroup = frame.mainGroup;
     }
 
-    private void propergateVerticalEffects() {
-        for (Element root : roots) {
-            for (Element parent : root.parentElements) {
-                if (parent.children.isEmpty()) {
+    private void calculateLayout(Frame frame, float layoutWidth, float layoutHeight) {
+        LayoutProfiler profiler = this.profiler;
+        long start = profiler == null ? 0 : profiler.start();
+        useFrame(frame);
+        store.clearState();
+
+        boolean retained = retainedMode;
+        culling = viewportCulling;
+        int generation = ++layoutGeneration;
+        synchronized (scrollDataMap) {
+            // Scroll data refers to the elements of the frame that is laid out, not the one that is declared
+            for (int i = 0; i < scrollDataList.size(); i++) {
+                ScrollDataInternal scrollData = scrollDataList.get(i);
+                Element element = frame.id2elementMap.get(scrollData.elementId);
+                if (element == null) {
                     continue;
                 }
-                float min, max;
-                if (parent.layout.layoutDirection() == LayoutDirection.LEFT_TO_RIGHT) {
-                    if (parent.layout.width().type() == ISizing.Type.PERCENTAGE) {
-                        min = 0f;
-                        max = parent.width;
-                    } else {
-                        min = parent.layout.width().minMax().min();
-                        max = parent.layout.width().minMax().max();
+                scrollData.element = element;
+                scrollData.layoutGeneration = generation;
+                scrollData.positioned = false;
+            }
+        }
+        if (retained) {
+            // Find the roots that can reuse the last frame
+            prepareRetainedRoots(layoutWidth, layoutHeight);
+        }
+
+        // Sort roots by z-index
+        ObjectArrayList<Element> sortedRoots = new ObjectArrayList<>();
+        sortedRoots.addAll(roots);
+        sortedRoots.sort((e1, e2) -> Integer.compare(e1.zIndex, e2.zIndex));
+        if (profiler != null) {
+            profiler.pass(LayoutPass.SORT_ROOTS, start);
+        }
+
+        RenderCommandBuffer previousCommands = commandBuffer.get();
+        RenderCommandBuffer renderCommands = previousCommands == commandBuffers[0] ? commandBuffers[1] : commandBuffers[0];
+        renderCommands.clear(previousCommands.generation() + 1);
+
+        ForkJoinPool pool = layoutPool;
+        if (pool != null && groupRoots(sortedRoots) > 1) {
+            calculateGroupsParallel(pool, retained, layoutWidth, layoutHeight, sortedRoots, renderCommands, previousCommands, profiler);
+        } else {
+            RootGroup group = mainGroup;
+            sizeGroup(group, retained, profiler);
+
+            // Calculate final positions
+            long time = profiler == null ? 0 : System.nanoTime();
+            ElementContext context = group.context;
+            context.reset(layoutWidth, layoutHeight, renderCommands);
+            for (Element root : sortedRoots) {
+                if (root.skipLayout) {
+                    copyRetainedCommands(root, renderCommands, previousCommands);
+                    continue;
+                }
+                positionRoot(root, retained, renderCommands, previousCommands, context);
+            }
+            if (profiler != null) {
+                profiler.pass(LayoutPass.POSITION, time);
+            }
+        }
+        if (culling) {
+            measureCulledContainers(generation);
+        }
+        commandBuffer.set(renderCommands);
+        long time = profiler == null ? 0 : System.nanoTime();
+        SpatialIndex index = spatialIndex == spatialIndices[0] ? spatialIndices[1] : spatialIndices[0];
+        // Same order as the render commands, so the root drawn on top is hit first
+        index.build(sortedRoots);
+        spatialIndex = index;
+        if (profiler != null) {
+            profiler.pass(LayoutPass.BUILD_SPATIAL_INDEX, time);
+            profiler.finish(start, store.size, textElements.size(), renderCommands.size());
+        }
+    }
+
+    /*
+     * Layout stages
+     */
+
+    private void sizeGroup(RootGroup group, boolean retained, LayoutProfiler profiler) {
+        if (profiler != null) {
+            sizeGroupProfiled(group, retained, profiler);
+            return;
+        }
+        // Size along x-axis
+        sizeContainersAlongAxis(group, true, retained);
+        // Wrap text
+        wrapText(group.textElements);
+        // Scale vertical heights according to aspect ratio
+        scaleAspectVertical(group.aspectRatioElements);
+        // Propergate effects of text wrapping, aspect scaling etc. on height of parents
+        propergateVerticalEffects(group.indices);
+        // Size along y-axis
+        sizeContainersAlongAxis(group, false, retained);
+        // Scale horizontal widths according to aspect ratio
+        scaleAspectHorizontal(group.aspectRatioElements);
+        // Write the sizes back to the elements
+        applySizes(group.indices);
+    }
+
+    private void sizeGroupProfiled(RootGroup group, boolean retained, LayoutProfiler profiler) {
+        long time = System.nanoTime();
+        sizeContainersAlongAxis(group, true, retained);
+        time = profiler.pass(LayoutPass.SIZE_X, time);
+        wrapText(group.textElements);
+        time = profiler.pass(LayoutPass.WRAP_TEXT, time);
+        scaleAspectVertical(group.aspectRatioElements);
+        time = profiler.pass(LayoutPass.SCALE_ASPECT_VERTICAL, time);
+        propergateVerticalEffects(group.indices);
+        time = profiler.pass(LayoutPass.PROPAGATE_VERTICAL_EFFECTS, time);
+        sizeContainersAlongAxis(group, false, retained);
+        time = profiler.pass(LayoutPass.SIZE_Y, time);
+        scaleAspectHorizontal(group.aspectRatioElements);
+        time = profiler.pass(LayoutPass.SCALE_ASPECT_HORIZONTAL, time);
+        applySizes(group.indices);
+        profiler.pass(LayoutPass.APPLY_SIZES, time);
+    }
+
+    private void calculateGroupsParallel(ForkJoinPool pool, boolean retained, float layoutWidth, float layoutHeight,
+        ObjectArrayList<Element> sortedRoots, RenderCommandBuffer renderCommands, RenderCommandBuffer previousCommands,
+        LayoutProfiler profiler) {
+        int generation = renderCommands.generation();
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[groupCount];
+        for (int i = 0; i < groupCount; i++) {
+            RootGroup group = groups.get(i);
+            tasks[i] = ForkJoinTask.adapt(() -> {
+                sizeGroup(group, retained, profiler);
+                long time = profiler == null ? 0 : System.nanoTime();
+                RenderCommandBuffer commands = group.commands;
+                commands.clear(generation);
+                group.context.reset(layoutWidth, layoutHeight, commands);
+                for (Element root : group.sortedRoots) {
+                    group.commandRanges.add(commands.size());
+                    positionRoot(root, retained, commands, previousCommands, group.context);
+                    group.commandRanges.add(commands.size());
+                }
+                if (profiler != null) {
+                    profiler.pass(LayoutPass.POSITION, time);
+                }
+            });
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+
+        // Merge the commands of all groups in render order
+        long time = profiler == null ? 0 : System.nanoTime();
+        for (Element root : sortedRoots) {
+            if (root.skipLayout) {
+                copyRetainedCommands(root, renderCommands, previousCommands);
+                continue;
+            }
+            RootGroup group = groups.get(rootGroups[root.rootIndex]);
+            int rootCommandIndex = renderCommands.size();
+            renderCommands.copy(group.commands, group.commandRanges.getInt(group.cursor), group.commandRanges.getInt(group.cursor + 1));
+            group.cursor += 2;
+            if (retained) {
+                root.retainedStart = rootCommandIndex;
+                root.retainedEnd = renderCommands.size();
+            }
+        }
+        if (profiler != null) {
+            profiler.pass(LayoutPass.POSITION, time);
+        }
+    }
+
+    private void copyRetainedCommands(Element root, RenderCommandBuffer renderCommands, RenderCommandBuffer previousCommands) {
+        int rootCommandIndex = renderCommands.size();
+        renderCommands.copy(previousCommands, root.retainedStart, root.retainedEnd);
+        root.retainedStart = rootCommandIndex;
+        root.retainedEnd = renderCommands.size();
+        root.retainedGeneration = renderCommands.generation();
+    }
+
+    private void positionRoot(Element root, boolean retained, RenderCommandBuffer renderCommands, RenderCommandBuffer previousCommands,
+        ElementContext context) {
+        int rootCommandIndex = renderCommands.size();
+        int commandVersion = root.retainedVersion;
+        root.x = root.y = 0f;
+        if (root.isFloating) {
+            IElementConfig.Floating config = root.layout.configOrNull(IElementConfig.Floating.class);
+            if (config.attachTo() == AttachToElement.ATTACH_TO_PARENT && root.parent != null) {
+                Element attachElement = targetOfFloating(root, config);
+                BoundingBox attachBox = attachElement == null ? null : boundingBoxOf(attachElement);
+                if (attachBox != null) {
+                    switch (config.parent()) {
+                    case TOP_LEFT:
+                    case CENTER_LEFT:
+                    case BOTTOM_LEFT:
+                        root.x = attachBox.x();
+                        break;
+                    case TOP_CENTER:
+                    case CENTER_CENTER:
+                    case BOTTOM_CENTER:
+                        root.x = attachBox.x() + (attachBox.width() / 2);
+                        break;
+                    case TOP_RIGHT:
+                    case CENTER_RIGHT:
+                    case BOTTOM_RIGHT:
+                        root.x = attachBox.x() + attachBox.width();
+                        break;
+                    }
+                    switch (config.element()) {
+                    case TOP_LEFT:
+                    case CENTER_LEFT:
+                    case BOTTOM_LEFT:
+                        break;
+                    case TOP_CENTER:
+                    case CENTER_CENTER:
+                    case BOTTOM_CENTER:
+                        root.x -= root.width / 2;
+                        break;
+                    case TOP_RIGHT:
+                    case CENTER_RIGHT:
+                    case BOTTOM_RIGHT:
+                        root.x -= root.width;
+                        break;
                     }
-                    float childHeightWithPadding;
-                    float parentPadding = parent.layout.padding().top() + parent.layout.padding().bottom();
-                    for (Element child : parent.children) {
-                        childHeightWithPadding = Math.max(child.height + parentPadding, parent.height);
-                        parent.height = Math.min(Math.max(childHeightWithPadding, min), max);
+                    switch (config.parent()) {
+                    case TOP_LEFT:
+                    case TOP_CENTER:
+                    case TOP_RIGHT:
+                        root.y = attachBox.y();
+                        break;
+                    case CENTER_LEFT:
+                    case CENTER_CENTER:
+                    case CENTER_RIGHT:
+                        root.y = attachBox.y() + (attachBox.height() / 2);
+                        break;
+                    case BOTTOM_LEFT:
+                    case BOTTOM_CENTER:
+                    case BOTTOM_RIGHT:
+                        root.y = attachBox.y() + attachBox.height();
+                        break;
+                    }
+                    switch (config.element()) {
+                    case TOP_LEFT:
+                    case TOP_CENTER:
+                    case TOP_RIGHT:
+                        break;
+                    case CENTER_LEFT:
+                    case CENTER_CENTER:
+                    case CENTER_RIGHT:
+                        root.y -= root.height / 2;
+                        break;
+                    case BOTTOM_LEFT:
+                    case BOTTOM_CENTER:
+                    case BOTTOM_RIGHT:
+                        root.y -= root.height;
+                        break;
+                    }
+                }
+            }
+        }
+        boolean culling = this.culling;
+        TreeNode rootNode = new TreeNode(root);
+        if (culling) {
+            rootNode.setVisible(0f, 0f, context.layoutWidth(), context.layoutHeight());
+        }
+        boolean rootHasToBeClosed = false;
+        if (root.clipElementId != null && (root.clipsHorizontal || root.clipsVertical)) {
+            Element element = id2elementMap.get(root.clipElementId);
+            BoundingBox box = element == null ? null : boundingBoxOf(element);
+            if (box != null) {
+                rootHasToBeClosed = true;
+                renderCommands.add(RenderCommand.CLIPPING_START_ID, 0, root, box.x, box.y, box.width, box.height, null);
+                if (culling && !retained) {
+                    rootNode.clipVisible(box);
+                }
+            }
+        }
+        context.zIndex = root.zIndex;
+        ObjectArrayList<TreeNode> nodes = new ObjectArrayList<>();
+        nodes.push(rootNode);
+        while (!nodes.isEmpty()) {
+            TreeNode node = nodes.getLast();
+            Element element = node.element;
+            float scrollOffsetX = 0f, scrollOffsetY = 0f;
+
+            if (!node.visited) {
+                node.visited = true;
+
+                if (retained) {
+                    if (canReuseCommands(root, element, node, commandVersion, previousCommands)) {
+                        // Nothing in this subtree changed, so the commands of the last frame are still valid
+                        int commandStart = renderCommands.size() - rootCommandIndex;
+                        renderCommands.copy(previousCommands, root.retainedStart + element.commandStart, root.retainedStart + element.commandEnd);
+                        element.commandEnd = commandStart + (element.commandEnd - element.commandStart);
+                        element.commandStart = commandStart;
+                        element.commandVersion = commandVersion + 1;
+                        nodes.removeLast();
+                        continue;
                     }
+                    element.commandStart = renderCommands.size() - rootCommandIndex;
+                }
+
+                BoundingBox elementBox = placeElement(element, node.x, node.y);
+                element.culled = false;
+
+                ScrollDataInternal scrollData = null;
+                if (element.elementId != null && (element.clipsHorizontal || element.clipsVertical)) {
+                    IElementConfig.Clip clip = element.layout.configOrNull(IElementConfig.Clip.class);
+                    synchronized (scrollDataMap) {
+                        scrollData = scrollDataMap.get(element.elementId);
+                        if (scrollData != null) {
+                            scrollData.boundingBox = elementBox;
+                            scrollData.width = elementBox.width;
+                            scrollData.height = elementBox.height;
+                        }
+                    }
+                    scrollOffsetX = clip.xChildOffset();
+                    scrollOffsetY = clip.yChildOffset();
+                    if (culling && !retained) {
+                        // The clip commands clip the children on both axes
+                        node.clipVisible(elementBox);
+                    }
+                }
+
+                context.emitRectangle = element.layout.renderBackground();
+                context.offscreen = context.isOffscreen(elementBox);
+                context.boundingBox = elementBox;
+                int currentIndex = renderCommands.size();
+                for (IElementConfig config : element.layout.configs()) {
+                    config.buildOpenCommands(context, element, config);
+                }
+
+                if (context.emitRectangle) {
+                    renderCommands.insert(currentIndex, RenderCommand.BACKGROUND_RECTANGLE_RENDERER_ID, context.zIndex, element, elementBox.x,
+                        elementBox.y, elementBox.width, elementBox.height, null);
+                }
+
+                alignChildren(element, node, scrollData);
+            } else {
+                context.emitRectangle = element.layout.renderBackground();
+                context.offscreen = context.isOffscreen(element.boundingBox);
+                context.boundingBox = element.boundingBox;
+                context.emitRectangle = false;
+                
+                if (element.elementId != null && (element.clipsHorizontal || element.clipsVertical)) {
+                    IElementConfig.Clip clip = element.layout.configOrNull(IElementConfig.Clip.class);
+                    scrollOffsetX = clip.xChildOffset();
+                    scrollOffsetY = clip.yChildOffset();
+                }
+                
+                // We go reverse order here
+                List<IElementConfig> configs = element.layout.configs();
+                IElementConfig config;
+                for (int index = configs.size() - 1; index >= 0; index--) {
+                    config = configs.get(index);
+                    config.buildCloseCommands(context, element, config);
+                }
+
+                if (retained) {
+                    element.commandEnd = renderCommands.size() - rootCommandIndex;
+                    element.commandVersion = commandVersion + 1;
+                }
+
+                nodes.removeLast();
+                continue;
+            }
+
+            int pushed = 0;
+            for (int childIndex = 0; childIndex < element.children.size(); childIndex++) {
+                Element child = element.children.get(childIndex);
+                alignChild(element, node, child);
+                float childX = node.x + node.offsetX + scrollOffsetX;
+                float childY = node.y + node.offsetY + scrollOffsetY;
+                if (culling && child.contained && node.isHidden(childX, childY, child.width, child.height)) {
+                    // Nothing of the subtree can be seen, its position is kept in case its bounding box is needed
+                    child.x = childX;
+                    child.y = childY;
+                    child.culled = true;
+                    child.culledResolved = false;
                 } else {
-                    if (parent.layout.height().type() == ISizing.Type.PERCENTAGE) {
-                        min = 0f;
-                        max = parent.height;
-                    } else {
-                        min = parent.layout.height().minMax().min();
-                        max = parent.layout.height().minMax().max();
+                    TreeNode childNode = new TreeNode(child);
+                    childNode.x = childX;
+                    childNode.y = childY;
+                    if (culling) {
+                        childNode.setVisible(node.visibleMinX, node.visibleMinY, node.visibleMaxX, node.visibleMaxY);
                     }
-                    float contentHeight = parent.layout.padding().top() + parent.layout.padding().bottom();
-                    for (Element child : parent.children) {
-                        contentHeight += child.height;
+                    nodes.add(nodes.size() - pushed++, childNode);
+                }
+                advanceChild(element, node, child);
+            }
+        }
+
+        if (rootHasToBeClosed) {
+            BoundingBox box = root.boundingBox;
+            renderCommands.add(RenderCommand.CLIPPING_END_ID, 0, root, box.x, box.y, box.width, box.height, null);
+        }
+
+        if (retained) {
+            root.retainedStart = rootCommandIndex;
+            root.retainedEnd = renderCommands.size();
+            root.retainedGeneration = renderCommands.generation();
+            root.retainedVersion = commandVersion + 1;
+        }
+    }
+
+    private BoundingBox placeElement(Element element, float x, float y) {
+        BoundingBox elementBox = element.boundingBox;
+        if (elementBox == null) {
+            elementBox = new BoundingBox(x, y, element.width, element.height);
+        } else {
+            elementBox.set(x, y, element.width, element.height);
+        }
+        if (element.isFloating) {
+            IElementConfig.Floating floating = element.layout.configOrNull(IElementConfig.Floating.class);
+            elementBox.x -= floating.expandWidth();
+            elementBox.width += floating.expandWidth() * 2;
+            elementBox.y -= floating.expandHeight();
+            elementBox.height += floating.expandHeight() * 2;
+        }
+        element.boundingBox = elementBox;
+        return elementBox;
+    }
+
+    private void alignChildren(Element element, TreeNode node, ScrollDataInternal scrollData) {
+        if (element.isText) {
+            return;
+        }
+        if (element.descriptor.leftToRight) {
+            float contentWidth = contentSize(element, true);
+            float extraSpace = element.width - (element.descriptor.paddingX + contentWidth);
+            switch (element.descriptor.childHorizontalAlignment) {
+            case LEFT:
+                extraSpace = 0f;
+                break;
+            case CENTER:
+                extraSpace /= 2f;
+                break;
+            default:
+                break;
+            }
+            extraSpace = Math.max(0, extraSpace);
+            node.offsetX += extraSpace;
+        } else {
+            float contentHeight = contentSize(element, false);
+            float extraSpace = element.height - (element.descriptor.paddingY + contentHeight);
+            switch (element.descriptor.childVerticalAlignment) {
+            case TOP:
+                extraSpace = 0f;
+                break;
+            case CENTER:
+                extraSpace /= 2f;
+                break;
+            default:
+                break;
+            }
+            extraSpace = Math.max(0, extraSpace);
+            node.offsetY += extraSpace;
+        }
+
+        if (scrollData != null) {
+            updateContentSize(scrollData, element);
+        }
+    }
+
+    private void updateContentSize(ScrollDataInternal scrollData, Element element) {
+        float contentWidth = contentSize(element, true) + element.descriptor.paddingX;
+        float contentHeight = contentSize(element, false) + element.descriptor.paddingY;
+        synchronized (scrollDataMap) {
+            scrollData.contentWidth = contentWidth;
+            scrollData.contentHeight = contentHeight;
+            scrollData.positioned = true;
+        }
+    }
+
+    /**
+     * Measures the content of the scroll containers of the layout which were culled, so they can still be scrolled.
+     */
+    private void measureCulledContainers(int generation) {
+        synchronized (scrollDataMap) {
+            for (int i = 0; i < scrollDataList.size(); i++) {
+                ScrollDataInternal scrollData = scrollDataList.get(i);
+                if (scrollData.layoutGeneration == generation && !scrollData.positioned && !scrollData.element.isText) {
+                    updateContentSize(scrollData, scrollData.element);
+                }
+            }
+        }
+    }
+
+    private static float contentSize(Element element, boolean horizontal) {
+        // Children are placed after each other along the layout direction and next to each other across it
+        boolean along = element.descriptor.leftToRight == horizontal;
+        float size = 0;
+        for (int i = 0; i < element.children.size(); i++) {
+            Element child = element.children.get(i);
+            float childSize = horizontal ? child.width : child.height;
+            size = along ? size + childSize : Math.max(size, childSize);
+        }
+        if (along) {
+            size += Math.max(0, element.children.size() - 1) * element.descriptor.childGap;
+        }
+        return size;
+    }
+
+    private void alignChild(Element element, TreeNode node, Element child) {
+        if (element.descriptor.leftToRight) {
+            node.offsetY = element.descriptor.paddingTop;
+            float whiteSpaceAroundChild = element.height - (element.descriptor.paddingY)
+                - child.height;
+            switch (element.descriptor.childVerticalAlignment) {
+            default:
+                break;
+            case CENTER:
+                node.offsetY += whiteSpaceAroundChild / 2f;
+                break;
+            case BOTTOM:
+                node.offsetY += whiteSpaceAroundChild;
+                break;
+            }
+        } else {
+            node.offsetX = element.descriptor.paddingLeft;
+            float whiteSpaceAroundChild = element.width - (element.descriptor.paddingX)
+                - child.width;
+            switch (element.descriptor.childHorizontalAlignment) {
+            default:
+                break;
+            case CENTER:
+                node.offsetX += whiteSpaceAroundChild / 2f;
+                break;
+            case RIGHT:
+                node.offsetX += whiteSpaceAroundChild;
+                break;
+            }
+        }
+    }
+
+    private void advanceChild(Element element, TreeNode node, Element child) {
+        if (element.descriptor.leftToRight) {
+            node.offsetX += child.width + element.descriptor.childGap;
+        } else {
+            node.offsetY += child.height + element.descriptor.childGap;
+        }
+    }
+
+    /**
+     * Returns the bounding box of the element in the current layout, elements of culled subtrees are positioned first.
+     */
+    private BoundingBox boundingBoxOf(Element element) {
+        if (!culling) {
+            return element.boundingBox;
+        }
+        // Only the outermost culled element was culled by the current layout, the flags below it can be outdated
+        Element culled = null;
+        for (Element current = element; current != null; current = current.parent) {
+            if (current.culled) {
+                culled = current;
+            }
+            if (current == element.layoutRoot) {
+                break;
+            }
+        }
+        if (culled != null && !culled.culledResolved) {
+            culled.culledResolved = true;
+            positionCulled(culled);
+        }
+        return element.boundingBox;
+    }
+
+    /**
+     * Calculates the bounding boxes of a culled subtree without building any commands.
+     */
+    private void positionCulled(Element culled) {
+        ObjectArrayList<TreeNode> nodes = new ObjectArrayList<>();
+        nodes.push(new TreeNode(culled));
+        while (!nodes.isEmpty()) {
+            TreeNode node = nodes.pop();
+            Element element = node.element;
+            float scrollOffsetX = 0f, scrollOffsetY = 0f;
+            BoundingBox elementBox = placeElement(element, node.x, node.y);
+
+            ScrollDataInternal scrollData = null;
+            if (element.elementId != null && (element.clipsHorizontal || element.clipsVertical)) {
+                IElementConfig.Clip clip = element.layout.configOrNull(IElementConfig.Clip.class);
+                synchronized (scrollDataMap) {
+                    scrollData = scrollDataMap.get(element.elementId);
+                    if (scrollData != null) {
+                        scrollData.boundingBox = elementBox;
+                        scrollData.width = elementBox.width;
+                        scrollData.height = elementBox.height;
                     }
-                    contentHeight += Math.max(parent.children.size() - 1, 0) * parent.layout.childGap();
-                    parent.height = Math.min(Math.max(contentHeight, min), max);
                 }
+                scrollOffsetX = clip.xChildOffset();
+                scrollOffsetY = clip.yChildOffset();
+            }
+            alignChildren(element, node, scrollData);
+
+            for (int childIndex = 0; childIndex < element.children.size(); childIndex++) {
+                Element child = element.children.get(childIndex);
+                alignChild(element, node, child);
+                TreeNode childNode = new TreeNode(child);
+                childNode.x = node.x + node.offsetX + scrollOffsetX;
+                childNode.y = node.y + node.offsetY + scrollOffsetY;
+                nodes.push(childNode);
+                advanceChild(element, node, child);
+            }
+        }
+    }
+
+    /**
+     * Checks if everything of the element and its children is drawn inside of the bounds of the element, which is required to
+     * cull the element.
+     */
+    private boolean isContained(Element element) {
+        if (element.isText) {
+            // Lines are only wider than the element if the text isn't wrapped
+            TextElementData textData = element.textData;
+            for (int i = 0; i < textData.lineCount(); i++) {
+                if (textData.lineWidth(i) > element.width + TOLERANCE) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (element.elementId != null && (element.clipsHorizontal || element.clipsVertical)) {
+            // Children are clipped to the bounds of the element
+            return true;
+        }
+        LayoutDescriptor descriptor = element.descriptor;
+        float innerWidth = element.width - descriptor.paddingX + TOLERANCE;
+        float innerHeight = element.height - descriptor.paddingY + TOLERANCE;
+        boolean leftToRight = descriptor.leftToRight;
+        float content = Math.max(0, element.children.size() - 1) * descriptor.childGap;
+        for (int i = 0; i < element.children.size(); i++) {
+            Element child = element.children.get(i);
+            if (!child.contained) {
+                return false;
+            }
+            if (leftToRight) {
+                content += child.width;
+                if (child.height > innerHeight) {
+                    return false;
+                }
+            } else {
+                content += child.height;
+                if (child.width > innerWidth) {
+                    return false;
+                }
+            }
+        }
+        return content <= (leftToRight ? innerWidth : innerHeight);
+    }
+
+    /*
+     * Internal functions
+     */
+
+    void addElement(Element element) {
+        Frame frame = this.frame;
+        frame.store.add(element);
+        boolean changed = false;
+        if (element.isText) {
+            frame.textElements.add(element);
+            changed = true;
+        }
+        if (element.hasAspectRatio) {
+            frame.aspectRatioElements.add(element);
+            changed = true;
+        }
+        if (element.parent == null || element.isFloating) {
+            frame.roots.add(element);
+            changed = true;
+        }
+        IElementConfig.Clip clip = element.layout.configOrNull(IElementConfig.Clip.class);
+        if (clip != null && element.elementId != null) {
+            synchronized (scrollDataMap) {
+                ScrollDataInternal data = scrollDataMap.get(element.elementId);
+                if (data == null) {
+                    data = new ScrollDataInternal();
+                    data.elementId = element.elementId;
+                    data.originX = data.originY = -1f;
+                    scrollDataMap.put(data.elementId, data);
+                    scrollDataList.add(data);
+                }
+                data.declaredGeneration = frameGeneration;
+            }
+            changed = true;
+        }
+
+        if (changed) {
+            this.changed = true;
+        }
+    }
+
+    Element retainedElement(Element parent, Layout layout, String elementId) {
+        if (!retainedMode || elementId == null) {
+            return null;
+        }
+        Element element = retainedElements.remove(elementId);
+        if (element == null || element.parent != parent || element.layout != layout && !element.layout.equals(layout)) {
+            return null;
+        }
+        return element;
+    }
+
+    /**
+     * Declares the lines of a virtualized container that intersect its viewport of the last layout, the other lines are
+     * replaced by a leading and a trailing spacer.
+     * <p>
+     * While the container wasn't laid out yet its fixed or max size, clamped to the size of the layout, is used as viewport.
+     * Containers without a clip or an element id have no scroll data and use the size of the layout as viewport.
+     */
+    void buildVirtualItems(Element element, IElementConfig.Virtualized config) {
+        int itemsPerLine = Math.max(config.itemsPerLine(), 1);
+        int lineCount = (config.itemCount() + itemsPerLine - 1) / itemsPerLine;
+        if (lineCount <= 0) {
+            return;
+        }
+        LayoutDescriptor descriptor = element.descriptor;
+        boolean horizontal = descriptor.leftToRight;
+        float gap = descriptor.childGap;
+        float stride = config.itemExtent() + gap;
+
+        // Start of the viewport relative to the first line, the offset of the clip is negative while scrolled
+        float start = horizontal ? descriptor.paddingLeft : descriptor.paddingTop;
+        for (Element child : element.children) {
+            start += (horizontal ? child.intrinsicWidth : child.intrinsicHeight) + gap;
+        }
+        IElementConfig.Clip clip = element.layout.configOrNull(IElementConfig.Clip.class);
+        float offset = -start;
+        if (clip != null) {
+            offset -= horizontal ? clip.xChildOffset() : clip.yChildOffset();
+        }
+        // The size of the container is only known after its first layout, until then its sizing is the best guess
+        float viewport = horizontal ? layoutWidth : layoutHeight;
+        if (clip != null && element.elementId != null) {
+            synchronized (scrollDataMap) {
+                ScrollDataInternal scrollData = scrollDataMap.get(element.elementId);
+                if (scrollData != null && scrollData.boundingBox != null) {
+                    viewport = horizontal ? scrollData.width : scrollData.height;
+                } else if (horizontal) {
+                    viewport = declaredViewport(descriptor.widthType, descriptor.widthMax, descriptor.widthPercentage, layoutWidth);
+                } else {
+                    viewport = declaredViewport(descriptor.heightType, descriptor.heightMax, descriptor.heightPercentage, layoutHeight);
+                }
+            }
+        }
+
+        int first = 0, end = lineCount;
+        if (stride > 0) {
+            int overscan = Math.max(config.overscan(), 0);
+            first = (int) Math.min(Math.max(Math.floor(offset / stride) - overscan, 0), lineCount);
+            end = (int) Math.min(Math.max(Math.ceil((offset + viewport) / stride) + overscan, first), lineCount);
+        }
+
+        if (first > 0) {
+            buildVirtualSpacer(element, horizontal, first * stride - gap);
+        }
+        for (int line = first; line < end; line++) {
+            if (itemsPerLine == 1) {
+                config.items().build(element, line);
+                continue;
+            }
+            Element.Builder builder = element.newElement();
+            builder.layout().width(ISizing.fit()).height(ISizing.fit()).padding(VIRTUAL_PADDING).childGap(descriptor.childGap)
+                .layoutDirection(horizontal ? LayoutDirection.TOP_TO_BOTTOM : LayoutDirection.LEFT_TO_RIGHT);
+            try (Element lineElement = builder.build()) {
+                int lineEnd = Math.min((line + 1) * itemsPerLine, config.itemCount());
+                for (int index = line * itemsPerLine; index < lineEnd; index++) {
+                    config.items().build(lineElement, index);
+                }
+            }
+        }
+        if (end < lineCount) {
+            buildVirtualSpacer(element, horizontal, (lineCount - end) * stride - gap);
+        }
+    }
+
+    private static float declaredViewport(byte type, float max, float percentage, float layoutSize) {
+        if (type == ElementStore.PERCENTAGE) {
+            return percentage * layoutSize;
+        }
+        return Math.min(max, layoutSize);
+    }
+
+    private void buildVirtualSpacer(Element element, boolean horizontal, float extent) {
+        Element.Builder builder = element.newElement();
+        builder.layout().width(ISizing.fixed(horizontal ? extent : 0)).height(ISizing.fixed(horizontal ? 0 : extent))
+            .padding(VIRTUAL_PADDING);
+        builder.build().close();
+    }
+
+    /**
+     * Returns the descriptor of the given layout, equal layouts share the same descriptor and layout instance.
+     * <p>
+     * Layouts with a text config get a descriptor of their own, as their text is part of the key and would fill the map with
+     * single use entries. Once the capacity is reached the descriptors are cleared, layouts that are still in use are interned
+     * again on their next declaration.
+     */
+    LayoutDescriptor layoutDescriptor(Layout layout) {
+        LayoutDescriptor descriptor = lastDescriptor;
+        if (descriptor != null && descriptor.layout == layout) {
+            return descriptor;
+        }
+        if (layout.configOrNull(IElementConfig.Text.class) != null) {
+            descriptor = new LayoutDescriptor(layout);
+            lastDescriptor = descriptor;
+            return descriptor;
+        }
+        descriptor = layoutDescriptors.get(layout);
+        if (descriptor == null) {
+            if (layoutDescriptors.size() >= LAYOUT_DESCRIPTOR_CAPACITY) {
+                layoutDescriptors.clear();
+            }
+            descriptor = new LayoutDescriptor(layout);
+            layoutDescriptors.put(layout, descriptor);
+        }
+        lastDescriptor = descriptor;
+        return descriptor;
+    }
+
+    Element pooledElement() {
+        if (!elementPooling || retainedMode) {
+            return null;
+        }
+        return elementPool.acquire(commandBuffer.get().generation());
+    }
+
+    void setElementId(String elementId, Element element) {
+        if (elementId == null) {
+            return;
+        }
+        Object2ObjectOpenHashMap<String, Element> id2elementMap = frame.id2elementMap;
+        if (id2elementMap.containsKey(elementId)) {
+            throw new IllegalArgumentException("Attachment id '%s' is already in use.".formatted(elementId));
+        }
+        id2elementMap.put(elementId, element);
+    }
+
+    /*
+     * Layout calculations
+     */
+
+    private int groupRoots(ObjectArrayList<Element> sortedRoots) {
+        ObjectArrayList<Element> roots = this.roots;
+        int rootCount = roots.size();
+        if (groupParents.length < rootCount) {
+            groupParents = new int[rootCount];
+            groupIds = new int[rootCount];
+            rootGroups = new int[rootCount];
+        }
+        int[] parents = groupParents;
+        for (int i = 0; i < rootCount; i++) {
+            roots.get(i).rootIndex = i;
+            parents[i] = i;
+            groupIds[i] = -1;
+        }
+        // Floating roots read the box of the element they are attached to and the box of the element that clips them, so they
+        // have to be laid out together with the roots of these elements
+        ElementStore store = this.store;
+        for (int i = 0; i < rootCount; i++) {
+            Element root = roots.get(i);
+            if (root.skipLayout) {
+                continue;
+            }
+            if (root.isFloating) {
+                Element target = targetOfFloating(root, root.layout.configOrNull(IElementConfig.Floating.class));
+                if (target != null && store.indexOf(target) != -1) {
+                    unionGroups(parents, i, target.layoutRoot.rootIndex);
+                }
+            }
+            if (root.clipElementId != null) {
+                Element clipElement = id2elementMap.get(root.clipElementId);
+                if (clipElement != null && store.indexOf(clipElement) != -1) {
+                    unionGroups(parents, i, clipElement.layoutRoot.rootIndex);
+                }
+            }
+        }
+        int count = 0;
+        for (int i = 0; i < rootCount; i++) {
+            if (roots.get(i).skipLayout) {
+                rootGroups[i] = -1;
+                continue;
+            }
+            int representative = findGroup(parents, i);
+            if (groupIds[representative] == -1) {
+                groupIds[representative] = count++;
+            }
+            rootGroups[i] = groupIds[representative];
+        }
+        groupCount = count;
+        if (count < 2) {
+            return count;
+        }
+
+        while (groups.size() < count) {
+            groups.add(new RootGroup());
+        }
+        for (int i = 0; i < count; i++) {
+            groups.get(i).clear();
+        }
+        int group;
+        for (int i = 0; i < rootCount; i++) {
+            if ((group = rootGroups[i]) != -1) {
+                groups.get(group).roots.add(roots.get(i));
+            }
+        }
+        for (Element root : sortedRoots) {
+            if ((group = rootGroups[root.rootIndex]) != -1) {
+                groups.get(group).sortedRoots.add(root);
+            }
+        }
+        for (Element element : textElements) {
+            if ((group = rootGroups[element.layoutRoot.rootIndex]) != -1) {
+                groups.get(group).textElements.add(element);
+            }
+        }
+        for (Element element : aspectRatioElements) {
+            if ((group = rootGroups[element.layoutRoot.rootIndex]) != -1) {
+                groups.get(group).aspectRatioElements.add(element);
+            }
+        }
+        for (int index = 0; index < store.size; index++) {
+            if ((group = rootGroups[store.elements[index].layoutRoot.rootIndex]) != -1) {
+                groups.get(group).indices.add(index);
+            }
+        }
+        return count;
+    }
+
+    private static int findGroup(int[] parents, int index) {
+        while (parents[index] != index) {
+            index = parents[index] = parents[parents[index]];
+        }
+        return index;
+    }
+
+    private static void unionGroups(int[] parents, int first, int second) {
+        first = findGroup(parents, first);
+        second = findGroup(parents, second);
+        if (first != second) {
+            parents[Math.max(first, second)] = Math.min(first, second);
+        }
+    }
+
+    private void prepareRetainedRoots(float layoutWidth, float layoutHeight) {
+        boolean dimensionsChanged = layoutWidth != retainedLayoutWidth || layoutHeight != retainedLayoutHeight;
+        int generation = commandBuffer.get().generation();
+        retainedLayoutWidth = layoutWidth;
+        retainedLayoutHeight = layoutHeight;
+        retainedDimensionsChanged = dimensionsChanged;
+        for (Element root : roots) {
+            root.skipLayout = !dimensionsChanged && root.unchanged && root.retainedGeneration == generation;
+        }
+        // Floating roots and the roots they are attached to depend on each other, so either all of them are skipped or none
+        boolean modified = true;
+        while (modified) {
+            modified = false;
+            for (Element root : roots) {
+                if (!root.isFloating) {
+                    continue;
+                }
+                Element target = targetOfFloating(root, root.layout.configOrNull(IElementConfig.Floating.class));
+                if (target == null || target.layoutRoot.skipLayout == root.skipLayout) {
+                    continue;
+                }
+                root.skipLayout = target.layoutRoot.skipLayout = false;
+                modified = true;
+            }
+        }
+        // Floating roots read the size of their target in every pass, so none of the parents of the target may skip their children
+        ElementStore store = this.store;
+        for (Element root : roots) {
+            if (root.skipLayout || !root.isFloating) {
+                continue;
+            }
+            Element target = targetOfFloating(root, root.layout.configOrNull(IElementConfig.Floating.class));
+            if (target == null || store.indexOf(target) == -1) {
+                continue;
+            }
+            for (int parent = store.parent[target.storeIndex]; parent != -1; parent = store.parent[parent]) {
+                store.state[parent] |= ElementStore.PINNED;
+            }
+        }
+    }
+
+    private boolean canSkipChildren(int index) {
+        // The children of an unchanged element are sized exactly like last time if the element has the same size as last time
+        Element element = store.elements[index];
+        return element.unchanged && element.sized && (store.state[index] & ElementStore.PINNED) == 0
+            && store.width[index] == element.sizedWidth && store.height[index] == element.sizedHeight;
+    }
+
+    private boolean canReuseCommands(Element root, Element element, TreeNode node, int commandVersion, RenderCommandBuffer previousCommands) {
+        if (retainedDimensionsChanged || (store.state[element.storeIndex] & ElementStore.REUSED) == 0 || element.isFloating
+            || element.commandVersion != commandVersion || root.retainedGeneration != previousCommands.generation()) {
+            return false;
+        }
+        BoundingBox box = element.boundingBox;
+        return box != null && box.x == node.x && box.y == node.y && box.width == element.width && box.height == element.height;
+    }
+
+    private void restoreStagedSizes(int index, IntArrayList stack) {
+        ElementStore store = this.store;
+        int start = stack.size();
+        for (int child = store.firstChild[index]; child != -1; child = store.nextSibling[child]) {
+            stack.push(child);
+        }
+        while (stack.size() > start) {
+            int current = stack.popInt();
+            Element element = store.elements[current];
+            store.width[current] = element.stagedWidth;
+            store.height[current] = element.stagedHeight;
+            store.minHeight[current] = element.minHeight;
+            for (int child = store.firstChild[current]; child != -1; child = store.nextSibling[child]) {
+                stack.push(child);
+            }
+        }
+    }
+
+    private void applySizes(IntArrayList indices) {
+        ElementStore store = this.store;
+        boolean culling = this.culling;
+        Element element;
+        int count = indices == null ? store.size : indices.size();
+        for (int i = 0, index; i < count; i++) {
+            index = indices == null ? i : indices.getInt(i);
+            if ((store.state[index] & ElementStore.FINAL) == 0) {
+                continue;
+            }
+            element = store.elements[index];
+            element.width = store.width[index];
+            element.height = store.height[index];
+            element.minWidth = store.minWidth[index];
+            element.minHeight = store.minHeight[index];
+            if (culling) {
+                // Children come before their parent in the store, so they are already updated
+                element.contained = isContained(element);
+            }
+        }
+    }
+
+    private void wrapText(ObjectArrayList<Element> textElements) {
+        long time = System.currentTimeMillis();
+        ForkJoinPool pool = layoutPool;
+        if (pool == null || textElements.size() < parallelTextThreshold) {
+            for (int i = 0; i < textElements.size(); i++) {
+                wrapText(textElements.get(i), time);
+            }
+            return;
+        }
+        // Every text element only changes its own data and height
+        runParallel(pool, textElements.size(), (from, to) -> {
+            for (int i = from; i < to; i++) {
+                wrapText(textElements.get(i), time);
+            }
+        });
+    }
+
+    private void wrapText(Element textElement, long time) {
+        ElementStore store = this.store;
+        int index = textElement.storeIndex;
+        if ((store.state[index] & ElementStore.SIZED) == 0) {
+            return;
+        }
+        float width = store.width[index];
+        IElementConfig.Text config = textElement.layout.configOrNull(IElementConfig.Text.class);
+        TextElementData textData = textElement.textData;
+        MeasuredText measured = measuredText(time, config);
+        if (config.wrapMode() == WrapMode.WRAP_NONE || (config.wrapMode() == WrapMode.WRAP_NEWLINES && !measured.containsNewLines())
+            || (!measured.containsNewLines() && textData.preferredWidth <= width)) {
+            textData.reset(config.text());
+            textData.add(0, config.text().length(), Math.min(width, measured.width()), Math.max(store.height[index], measured.height()));
+            return;
+        }
+        float lineWidth = 0, lineHeight = config.lineHeight() > 0 ? config.lineHeight() : textData.preferredHeight;
+        // Skip wrapping if the same text was already wrapped at the same width, either by this element or another one
+        if (textData.isWrapped(measured, width, lineHeight, TOLERANCE)) {
+            store.height[index] = lineHeight * textData.lineCount();
+            return;
+        }
+        // The measured text can be shared by elements that are wrapped on other threads
+        synchronized (measured) {
+            TextElementData wrapped = measured.wrapped;
+            if (wrapped != null && wrapped.isWrapped(measured, width, lineHeight, TOLERANCE)) {
+                textData.copyLines(wrapped);
+                store.height[index] = lineHeight * textData.lineCount();
+                return;
+            }
+        }
+        textData.reset(config.text());
+        int lineLength = 0, lineStartOffset = 0;
+        String text = config.text();
+        float spaceWidth = spaceSize(config.font(), config.fontSize())[0];
+        MeasuredWord word;
+        for (int i = 0; i < measured.words.size(); i++) {
+            word = measured.words.get(i);
+            if (lineLength == 0 && lineWidth + word.width() > width) {
+                textData.add(word.start(), word.start() + word.length(), word.width(), lineHeight);
+                lineStartOffset = word.start() + word.length();
+            } else if (word.length() == 0 || lineWidth + word.width() > width) {
+                // An empty line can follow a space if the word before didn't fit on its own line
+                boolean finalCharIsSpace = lineLength > 0 && text.charAt(lineStartOffset + lineLength - 1) == ' ';
+                textData.add(lineStartOffset, lineStartOffset + lineLength + (finalCharIsSpace ? -1 : 0),
+                    lineWidth + (finalCharIsSpace ? -spaceWidth : 0), lineHeight);
+                if (lineLength != 0 && word.length() != 0) {
+                    i--; // We go back by one
+                }
+                lineWidth = 0;
+                lineLength = 0;
+                lineStartOffset = word.start();
+            } else {
+                lineWidth += word.width() + config.letterSpacing();
+                lineLength += word.length();
+            }
+        }
+        if (lineLength > 0) {
+            textData.add(lineStartOffset, lineStartOffset + lineLength, lineWidth - config.letterSpacing(), lineHeight);
+        }
+        textData.setWrapped(measured, width, lineHeight);
+        synchronized (measured) {
+            if (measured.wrapped == null) {
+                measured.wrapped = new TextElementData(textData.preferredWidth, textData.preferredHeight);
+            }
+            measured.wrapped.copyLines(textData);
+        }
+        store.height[index] = lineHeight * textData.lineCount();
+    }
+
+    private void scaleAspectVertical(ObjectArrayList<Element> aspectRatioElements) {
+        ElementStore store = this.store;
+        for (Element element : aspectRatioElements) {
+            int index = element.storeIndex;
+            if ((store.state[index] & ElementStore.SIZED) == 0) {
+                continue;
+            }
+            store.height[index] = (1 / store.aspectRatio[index]) * store.width[index];
+            store.minHeight[index] = store.height[index];
+        }
+    }
+
+    private void scaleAspectHorizontal(ObjectArrayList<Element> aspectRatioElements) {
+        ElementStore store = this.store;
+        for (Element element : aspectRatioElements) {
+            int index = element.storeIndex;
+            if ((store.state[index] & ElementStore.FINAL) == 0) {
+                continue;
+            }
+            store.width[index] = store.aspectRatio[index] * store.height[index];
+        }
+    }
+
+    private void propergateVerticalEffects(IntArrayList indices) {
+        ElementStore store = this.store;
+        float[] height = store.height;
+        // Children are always stored before their parents
+        int count = indices == null ? store.size : indices.size();
+        for (int i = 0, parent; i < count; i++) {
+            parent = indices == null ? i : indices.getInt(i);
+            if (store.childCount[parent] == 0 || (store.state[parent] & ElementStore.SIZED) == 0) {
+                continue;
+            }
+            if ((store.state[parent] & ElementStore.SKIPPED) != 0) {
+                height[parent] = store.elements[parent].stagedHeight;
+                continue;
+            }
+            float min, max;
+            if ((store.flags[parent] & ElementStore.LEFT_TO_RIGHT) != 0) {
+                if (store.widthType[parent] == ElementStore.PERCENTAGE) {
+                    min = 0f;
+                    max = store.width[parent];
+                } else {
+                    min = store.widthMin[parent];
+                    max = store.widthMax[parent];
+                }
+                float childHeightWithPadding;
+                float parentPadding = store.paddingY[parent];
+                for (int child = store.firstChild[parent]; child != -1; child = store.nextSibling[child]) {
+                    childHeightWithPadding = Math.max(height[child] + parentPadding, height[parent]);
+                    height[parent] = Math.min(Math.max(childHeightWithPadding, min), max);
+                }
+            } else {
+                if (store.heightType[parent] == ElementStore.PERCENTAGE) {
+                    min = 0f;
+                    max = height[parent];
+                } else {
+                    min = store.heightMin[parent];
+                    max = store.heightMax[parent];
+                }
+                float contentHeight = store.paddingY[parent];
+                for (int child = store.firstChild[parent]; child != -1; child = store.nextSibling[child]) {
+                    contentHeight += height[child];
+                }
+                contentHeight += Math.max(store.childCount[parent] - 1, 0) * store.childGap[parent];
+                height[parent] = Math.min(Math.max(contentHeight, min), max);
             }
         }
     }
@@ -836,224 +2056,229 @@ public final class LayoutContext {
         }
     }
 
-    private void sizeContainersAlongAxis(boolean xAxis) {
-        for (Element root : roots) {
-            root.layout.config(IElementConfig.Floating.class).ifPresent(floating -> {
-                Element attachElement = targetOfFloating(root, floating);
+    private void sizeContainersAlongAxis(RootGroup group, boolean xAxis, boolean retained) {
+        ElementStore store = this.store;
+        byte stateFlag = xAxis ? ElementStore.SIZED : ElementStore.FINAL;
+        ForkJoinPool pool = layoutPool;
+        int parallelThreshold = this.parallelSizingThreshold;
+        IntArrayList stack = group.sizingStack;
+        IntArrayList resizeable = group.resizeable;
+        for (Element root : group.roots) {
+            if (root.skipLayout) {
+                continue;
+            }
+            int rootIndex = root.storeIndex;
+            store.state[rootIndex] |= stateFlag;
+            if (retained && !xAxis) {
+                root.stagedWidth = store.width[rootIndex];
+                root.stagedHeight = store.height[rootIndex];
+            }
+            if (root.isFloating) {
+                Element attachElement = targetOfFloating(root, root.layout.configOrNull(IElementConfig.Floating.class));
                 // Unknown element, rip
-                if (attachElement == null) {
-                    return;
-                }
-                switch (root.layout.width().type()) {
-                case GROW -> {
-                    root.width = attachElement.width;
-                }
-                case PERCENTAGE -> {
-                    root.width = attachElement.width * root.layout.width().percentage();
-                }
-                default -> {
-                }
+                int attachIndex = attachElement == null ? -1 : store.indexOf(attachElement);
+                if (attachIndex != -1) {
+                    switch (store.widthType[rootIndex]) {
+                    case ElementStore.GROW -> {
+                        store.width[rootIndex] = store.width[attachIndex];
+                    }
+                    case ElementStore.PERCENTAGE -> {
+                        store.width[rootIndex] = store.width[attachIndex] * store.widthPercentage[rootIndex];
+                    }
+                    default -> {
+                    }
+                    }
+                    switch (store.heightType[rootIndex]) {
+                    case ElementStore.GROW -> {
+                        store.height[rootIndex] = store.height[attachIndex];
+                    }
+                    case ElementStore.PERCENTAGE -> {
+                        store.height[rootIndex] = store.height[attachIndex] * store.heightPercentage[rootIndex];
+                    }
+                    default -> {
+                    }
+                    }
                 }
-                switch (root.layout.height().type()) {
-                case GROW -> {
-                    root.height = attachElement.height;
+            }
+
+            if (store.widthType[rootIndex] != ElementStore.PERCENTAGE) {
+                store.width[rootIndex] = Math.min(Math.max(store.width[rootIndex], store.widthMin[rootIndex]), store.widthMax[rootIndex]);
+            }
+            if (store.heightType[rootIndex] != ElementStore.PERCENTAGE) {
+                store.height[rootIndex] = Math.min(Math.max(store.height[rootIndex], store.heightMin[rootIndex]), store.heightMax[rootIndex]);
+            }
+
+            if (pool == null || store.subtreeSize[rootIndex] < parallelThreshold) {
+                sizeSubtree(rootIndex, xAxis, retained, stack, resizeable, false);
+            } else if (ForkJoinTask.getPool() == pool) {
+                sizeSubtree(rootIndex, xAxis, retained, stack, resizeable, true);
+            } else {
+                pool.invoke(new SizingTask(rootIndex, xAxis, retained));
+            }
+        }
+    }
+
+    private void sizeSubtree(int index, boolean xAxis, boolean retained, IntArrayList stack, IntArrayList resizeable, boolean parallel) {
+        ElementStore store = this.store;
+        ObjectArrayList<SizingTask> tasks = null;
+        int start = stack.size();
+        stack.push(index);
+        while (stack.size() > start) {
+            int parent = stack.popInt();
+            int childStart = stack.size();
+            sizeChildren(parent, xAxis, retained, stack, resizeable);
+            if (!parallel) {
+                continue;
+            }
+            // The children are already sized along this axis, so large subtrees can be sized by other threads
+            for (int i = stack.size() - 1; i >= childStart; i--) {
+                int child = stack.getInt(i);
+                if (store.subtreeSize[child] < parallelSizingThreshold) {
+                    continue;
                 }
-                case PERCENTAGE -> {
-                    root.height = attachElement.height * root.layout.height().percentage();
+                stack.removeInt(i);
+                if (tasks == null) {
+                    tasks = new ObjectArrayList<>();
                 }
-                default -> {
+                SizingTask task = new SizingTask(child, xAxis, retained);
+                task.fork();
+                tasks.add(task);
+            }
+        }
+        if (tasks != null) {
+            for (int i = 0; i < tasks.size(); i++) {
+                tasks.get(i).join();
+            }
+        }
+    }
+
+    private void sizeChildren(int parent, boolean xAxis, boolean retained, IntArrayList stack, IntArrayList resizeable) {
+        ElementStore store = this.store;
+        float[] sizes = xAxis ? store.width : store.height;
+        float[] minSizes = xAxis ? store.minWidth : store.minHeight;
+        float[] maxSizes = xAxis ? store.widthMax : store.heightMax;
+        float[] percentages = xAxis ? store.widthPercentage : store.heightPercentage;
+        float[] paddings = xAxis ? store.paddingX : store.paddingY;
+        byte[] types = xAxis ? store.widthType : store.heightType;
+        byte clipFlag = xAxis ? ElementStore.CLIPS_HORIZONTAL : ElementStore.CLIPS_VERTICAL;
+        byte stateFlag = xAxis ? ElementStore.SIZED : ElementStore.FINAL;
+        if (retained) {
+            Element parentElement = store.elements[parent];
+            if (xAxis) {
+                if (canSkipChildren(parent)) {
+                    store.state[parent] |= ElementStore.SKIPPED;
+                    return;
                 }
+                parentElement.sized = true;
+                parentElement.sizedWidth = store.width[parent];
+                parentElement.sizedHeight = store.height[parent];
+            } else {
+                if ((store.state[parent] & ElementStore.SKIPPED) != 0) {
+                    if (store.height[parent] == parentElement.sizedFinalHeight) {
+                        store.state[parent] |= ElementStore.REUSED;
+                        return;
+                    }
+                    // The children still have their final sizes of the last frame
+                    restoreStagedSizes(parent, stack);
                 }
-            });
+                parentElement.sizedFinalHeight = store.height[parent];
+            }
+        }
+        float parentSize = sizes[parent];
+        float parentPadding = paddings[parent];
+        float parentChildGap = store.childGap[parent];
+        float innerSize = 0, totalPaddingAndChildGaps = parentPadding;
+        boolean sizingAlongAxis = xAxis == ((store.flags[parent] & ElementStore.LEFT_TO_RIGHT) != 0);
+        boolean isClipping = (store.flags[parent] & clipFlag) != 0;
+
+        boolean hasGrowable = false;
+        resizeable.clear();
+
+        // Pre pass
+        int child, i;
+        byte type;
+        float size;
+        for (child = store.firstChild[parent], i = 0; child != -1; child = store.nextSibling[child], i++) {
+            store.state[child] |= stateFlag;
+            if (retained && !xAxis) {
+                Element childElement = store.elements[child];
+                childElement.stagedWidth = store.width[child];
+                childElement.stagedHeight = store.height[child];
+            }
+            type = types[child];
+            size = sizes[child];
 
-            if (root.layout.width().type() != ISizing.Type.PERCENTAGE) {
-                root.width = Math.min(Math.max(root.width, root.layout.width().minMax().min()), root.layout.width().minMax().max());
-            }
-            if (root.layout.height().type() != ISizing.Type.PERCENTAGE) {
-                root.height = Math.min(Math.max(root.height, root.layout.height().minMax().min()), root.layout.height().minMax().max());
-            }
-
-            ObjectArrayList<Element> stack = new ObjectArrayList<>();
-            stack.push(root);
-            while (!stack.isEmpty()) {
-                Element parent = stack.pop();
-                float parentSize = xAxis ? parent.width : parent.height;
-                float parentPadding = xAxis ? parent.layout.padding().left() + parent.layout.padding().right()
-                    : parent.layout.padding().top() + parent.layout.padding().bottom();
-                float parentChildGap = parent.layout.childGap();
-                float innerSize = 0, totalPaddingAndChildGaps = parentPadding;
-                boolean sizingAlongAxis = (xAxis && (parent.layout.layoutDirection() == LayoutDirection.LEFT_TO_RIGHT))
-                    || (!xAxis && (parent.layout.layoutDirection() == LayoutDirection.TOP_TO_BOTTOM));
-                boolean isClipping = (xAxis && parent.clipsHorizontal) || (!xAxis && parent.clipsVertical);
-
-                boolean hasGrowable = false;
-                ObjectArrayList<Element> resizeable = new ObjectArrayList<>(parent.children.size());
-
-                // Pre pass
-                Element child;
-                ISizing sizing;
-                float size;
-                for (int i = 0; i < parent.children.size(); i++) {
-                    child = parent.children.get(i);
-                    sizing = xAxis ? child.layout.width() : child.layout.height();
-                    size = xAxis ? child.width : child.height;
-                    
-                    if (!child.children.isEmpty()) {
-                        stack.add(child);
-                    }
+            if (store.childCount[child] != 0) {
+                stack.push(child);
+            }
 
-                    if (sizing.type() != ISizing.Type.PERCENTAGE && sizing.type() != ISizing.Type.FIXED
-                        && child.layout.config(IElementConfig.Text.class).filter(cfg -> cfg.wrapMode() != WrapMode.WRAP_WORDS).isEmpty()) {
-                        resizeable.add(child);
-                    }
+            if (type != ElementStore.PERCENTAGE && type != ElementStore.FIXED && (store.flags[child] & ElementStore.UNWRAPPED_TEXT) == 0) {
+                resizeable.add(child);
+            }
 
-                    if (sizingAlongAxis) {
-                        innerSize += (sizing.type() == ISizing.Type.PERCENTAGE ? 0 : size);
-                        if (sizing.type() == ISizing.Type.GROW) {
-                            hasGrowable = true;
-                        }
-                        if (i != 0) {
-                            innerSize += parentChildGap;
-                            totalPaddingAndChildGaps += parentChildGap;
-                        }
-                    } else {
-                        innerSize = Math.max(size, innerSize);
-                    }
+            if (sizingAlongAxis) {
+                innerSize += (type == ElementStore.PERCENTAGE ? 0 : size);
+                if (type == ElementStore.GROW) {
+                    hasGrowable = true;
                 }
-
-                // Expand percentage containers to size
-                for (int i = 0; i < parent.children.size(); i++) {
-                    child = parent.children.get(i);
-                    sizing = xAxis ? child.layout.width() : child.layout.height();
-                    if (sizing.type() != ISizing.Type.PERCENTAGE) {
-                        continue;
-                    }
-                    size = (parentSize - totalPaddingAndChildGaps) * sizing.percentage();
-                    if (sizingAlongAxis) {
-                        innerSize += size;
-                    }
-                    if (xAxis) {
-                        child.width = size;
-                    } else {
-                        child.height = size;
-                    }
-                    child.updateAspectRatioBox();
+                if (i != 0) {
+                    innerSize += parentChildGap;
+                    totalPaddingAndChildGaps += parentChildGap;
                 }
+            } else {
+                innerSize = Math.max(size, innerSize);
+            }
+        }
 
-                if (sizingAlongAxis) {
-                    float sizeToDistribute = parentSize - parentPadding - innerSize;
-                    if (sizeToDistribute < 0) {
-                        if (isClipping) {
-                            continue;
-                        }
-                        float largest, secondLargest, sizeToAdd, minAxis, previousSize;
-                        while (sizeToDistribute < -TOLERANCE && !resizeable.isEmpty()) {
-                            largest = 0;
-                            secondLargest = 0;
-                            sizeToAdd = sizeToDistribute;
-                            for (int i = 0; i < resizeable.size(); i++) {
-                                child = resizeable.get(i);
-                                size = xAxis ? child.width : child.height;
-                                if (valueEquals(size, largest)) {
-                                    continue;
-                                }
-                                if (size > largest) {
-                                    secondLargest = largest;
-                                    largest = size;
-                                }
-                                if (size < largest) {
-                                    secondLargest = Math.max(secondLargest, size);
-                                    sizeToAdd = secondLargest - largest;
-                                }
-                            }
-                            sizeToAdd = Math.max(sizeToAdd, sizeToDistribute / resizeable.size());
-                            for (int i = 0; i < resizeable.size(); i++) {
-                                child = resizeable.get(i);
-                                size = xAxis ? child.width : child.height;
-                                minAxis = xAxis ? child.minWidth : child.minHeight;
-                                previousSize = size;
-                                if (valueEquals(size, largest)) {
-                                    size += sizeToAdd;
-                                    if (size <= minAxis) {
-                                        size = minAxis;
-                                        resizeable.remove(i--);
-                                    }
-                                    sizeToDistribute -= (size - previousSize);
-                                    if (xAxis) {
-                                        child.width = size;
-                                    } else {
-                                        child.height = size;
-                                    }
-                                }
-                            }
-                        }
-                    } else if (sizeToDistribute > 0 && hasGrowable) {
-                        for (int i = 0; i < resizeable.size(); i++) {
-                            child = resizeable.get(i);
-                            sizing = xAxis ? child.layout.width() : child.layout.height();
-                            if (sizing.type() != ISizing.Type.GROW) {
-                                resizeable.remove(i--);
-                            }
-                        }
-                        float smallest, secondSmallest, sizeToAdd, maxSize, previousSize;
-                        while (sizeToDistribute > TOLERANCE && !resizeable.isEmpty()) {
-                            smallest = Float.MAX_VALUE;
-                            secondSmallest = Float.MAX_VALUE;
-                            sizeToAdd = sizeToDistribute;
-                            for (int i = 0; i < resizeable.size(); i++) {
-                                child = resizeable.get(i);
-                                size = xAxis ? child.width : child.height;
-                                if (valueEquals(size, smallest)) {
-                                    continue;
-                                }
-                                if (size < smallest) {
-                                    secondSmallest = smallest;
-                                    smallest = size;
-                                }
-                                if (size > smallest) {
-                                    secondSmallest = Math.min(secondSmallest, size);
-                                    sizeToAdd = secondSmallest - smallest;
-                                }
-                            }
-                            sizeToAdd = Math.min(sizeToAdd, sizeToDistribute / resizeable.size());
-                            for (int i = 0; i < resizeable.size(); i++) {
-                                child = resizeable.get(i);
-                                size = xAxis ? child.width : child.height;
-                                maxSize = xAxis ? child.layout.width().minMax().max() : child.layout.height().minMax().max();
-                                previousSize = size;
-                                if (valueEquals(size, smallest)) {
-                                    size += sizeToAdd;
-                                    if (size >= maxSize) {
-                                        size = maxSize;
-                                        resizeable.remove(i--);
-                                    }
-                                    sizeToDistribute -= (size - previousSize);
-                                    if (xAxis) {
-                                        child.width = size;
-                                    } else {
-                                        child.height = size;
-                                    }
-                                }
-                            }
-                        }
-                    }
-                } else {
-                    float minSize, maxSize;
-                    for (int i = 0; i < resizeable.size(); i++) {
-                        child = resizeable.get(i);
-                        sizing = xAxis ? child.layout.width() : child.layout.height();
-                        size = xAxis ? child.width : child.height;
-                        minSize = xAxis ? child.minWidth : child.minHeight;
-                        maxSize = parentSize - parentPadding;
-                        if (isClipping) {
-                            maxSize = Math.max(maxSize, innerSize);
-                        }
-                        if (sizing.type() == ISizing.Type.GROW) {
-                            size = Math.min(maxSize, sizing.minMax().max());
-                        }
-                        size = Math.max(minSize, Math.min(size, maxSize));
+        // Expand percentage containers to size
+        for (child = store.firstChild[parent]; child != -1; child = store.nextSibling[child]) {
+            if (types[child] != ElementStore.PERCENTAGE) {
+                continue;
+            }
+            size = (parentSize - totalPaddingAndChildGaps) * percentages[child];
+            if (sizingAlongAxis) {
+                innerSize += size;
+            }
+            sizes[child] = size;
+            store.updateAspectRatioBox(child);
+        }
+
+        if (sizingAlongAxis) {
+            float sizeToDistribute = parentSize - parentPadding - innerSize;
+            if (sizeToDistribute < 0) {
+                if (isClipping) {
+                    return;
+                }
+                if (sizeToDistribute < -TOLERANCE) {
+                    distribute(resizeable.elements(), resizeable.size(), sizes, minSizes, sizeToDistribute, false);
+                }
+            } else if (sizeToDistribute > 0 && hasGrowable) {
+                int count = 0;
+                for (i = 0; i < resizeable.size(); i++) {
+                    child = resizeable.getInt(i);
+                    if (types[child] == ElementStore.GROW) {
+                        resizeable.set(count++, child);
                     }
                 }
+                resizeable.size(count);
+                if (sizeToDistribute > TOLERANCE) {
+                    distribute(resizeable.elements(), count, sizes, maxSizes, sizeToDistribute, true);
+                }
+            }
+        } else {
+            float minSize, maxSize;
+            for (i = 0; i < resizeable.size(); i++) {
+                child = resizeable.getInt(i);
+                size = sizes[child];
+                minSize = minSizes[child];
+                maxSize = parentSize - parentPadding;
+                if (isClipping) {
+                    maxSize = Math.max(maxSize, innerSize);
+                }
+                if (types[child] == ElementStore.GROW) {
+                    size = Math.min(maxSize, maxSizes[child]);
+                }
+                size = Math.max(minSize, Math.min(size, maxSize));
             }
         }
     }
@@ -1063,31 +2288,85 @@ public final class LayoutContext {
      */
 
     public final MeasuredText measuredText(long time, IElementConfig.Text config) {
-        int textHash = config.text().hashCode(), fontId = config.font().id();
+        String text = config.text();
+        int fontId = config.font().id();
         float fontSize = config.fontSize();
-        int hash = MeasuredText.hash(textHash, fontId, fontSize);
-        MeasuredText measured = textCache.get(hash);
+        MeasuredText measured;
+        synchronized (textCache) {
+            measured = textCache.get(text, fontId, fontSize, config.letterSpacing());
+        }
+        LayoutProfiler profiler = this.profiler;
         if (measured != null) {
+            if (profiler != null) {
+                profiler.textCacheHit();
+            }
             measured.lastAccess = time;
             return measured;
         }
-        measured = new MeasuredText(time, textHash, fontId, fontSize);
+        if (profiler != null) {
+            profiler.textCacheMiss();
+        }
+        measured = new MeasuredText(time, text, fontId, fontSize, config.letterSpacing());
 
         IFont font = config.font();
         float[] dimensions = new float[2];
         int start = 0, end = 0;
         float lineWidth = 0f;
         float measuredWidth = 0f, measuredHeight = 0f;
-        font.calculateSize(" ", fontSize, dimensions);
+        float[] spaceSize = spaceSize(font, fontSize);
+        dimensions[0] = spaceSize[0];
+        dimensions[1] = spaceSize[1];
         float spaceWidth = dimensions[0];
-        String text = config.text();
         int stringLength = text.length(), length;
+
+        // Collect all words first, so they can be measured in a single batch
+        int wordCount = 0;
+        char current;
+        while (end < stringLength) {
+            current = text.charAt(end);
+            if (current == ' ' || current == '\n') {
+                if (end > start) {
+                    wordCount++;
+                }
+                start = end + 1;
+            }
+            end++;
+        }
+        if (end > start) {
+            wordCount++;
+        }
+        int[] ranges = new int[wordCount * 2];
+        float[] sizes = new float[wordCount * 2];
+        int word = 0;
+        start = end = 0;
         while (end < stringLength) {
-            char current = text.charAt(end);
+            current = text.charAt(end);
+            if (current == ' ' || current == '\n') {
+                if (end > start) {
+                    ranges[word++] = start;
+                    ranges[word++] = end;
+                }
+                start = end + 1;
+            }
+            end++;
+        }
+        if (end > start) {
+            ranges[word] = start;
+            ranges[word + 1] = end;
+        }
+        if (wordCount != 0) {
+            measureWords(font, text, ranges, wordCount, fontSize, sizes);
+        }
+
+        word = 0;
+        start = end = 0;
+        while (end < stringLength) {
+            current = text.charAt(end);
             if (current == ' ' || current == '\n') {
                 length = end - start;
                 if (length > 0) {
-                    font.calculateSize(text.substring(start, start + length), fontSize, dimensions);
+                    dimensions[0] = sizes[word++];
+                    dimensions[1] = sizes[word++];
                 }
                 measured.minWidth = Math.max(dimensions[0], measured.minWidth);
                 measuredHeight = Math.max(measuredHeight, dimensions[1]);
@@ -1111,7 +2390,8 @@ public final class LayoutContext {
             end++;
         }
         if (end - start > 0) {
-            font.calculateSize(text.substring(start, end), fontSize, dimensions);
+            dimensions[0] = sizes[word];
+            dimensions[1] = sizes[word + 1];
             measured.iWords.add(new MeasuredWord(start, end - start, dimensions[0]));
             lineWidth += dimensions[0];
             measuredHeight = Math.max(measuredHeight, dimensions[1]);
@@ -1122,34 +2402,130 @@ public final class LayoutContext {
         measured.width = measuredWidth;
         measured.height = measuredHeight;
 
-        if (measured.iWords.size() <= TEXT_CACHE_MAX_WORD_COUNT && textCache.get(hash) != measured) {
-            if (textCache.size() + 1 > TEXT_CACHE_MAX_SIZE) {
-                popLastTextCacheEntry();
-            }
-            textCache.put(hash, measured);
+        synchronized (textCache) {
+            textCache.put(measured);
         }
         return measured;
     }
 
-    private void popLastTextCacheEntry() {
-        Int2ObjectMap.Entry<MeasuredText> entry = textCache.int2ObjectEntrySet().stream()
-            .sorted((t1, t2) -> Long.compare(t1.getValue().lastAccess, t2.getValue().lastAccess)).findFirst().orElse(null);
-        if (entry == null) {
+    private float[] spaceSize(IFont font, float fontSize) {
+        long key = ((long) font.id() << 32) | (Float.floatToIntBits(fontSize) & 0xFFFFFFFFL);
+        float[] size;
+        synchronized (spaceSizes) {
+            size = spaceSizes.get(key);
+        }
+        if (size == null) {
+            size = new float[2];
+            measureWord(font, " ", 0, 1, fontSize, size);
+            synchronized (spaceSizes) {
+                spaceSizes.put(key, size);
+            }
+        }
+        return size;
+    }
+
+    private void measureWord(IFont font, String text, int start, int end, float fontSize, float[] size) {
+        WordCache wordCache = this.wordCache;
+        if (wordCache != null) {
+            if (wordCache.calculateSize(font, text, start, end, fontSize, size)) {
+                fontCalled(1);
+            }
+            return;
+        }
+        font.calculateSize(text.substring(start, end), fontSize, size);
+        fontCalled(1);
+    }
+
+    private void measureWords(IFont font, String text, int[] ranges, int count, float fontSize, float[] sizes) {
+        WordCache wordCache = this.wordCache;
+        if (wordCache != null) {
+            fontCalled(wordCache.calculateSizes(font, text, ranges, count, fontSize, sizes));
             return;
         }
-        textCache.remove(entry.getIntKey());
+        font.calculateSizes(text, ranges, count, fontSize, sizes);
+        fontCalled(count);
+    }
+
+    private void fontCalled(int words) {
+        LayoutProfiler profiler = this.profiler;
+        if (profiler != null && words != 0) {
+            profiler.fontCalls(words);
+        }
     }
 
     /*
      * Helper
      */
 
-    private ScrollDataInternal scrollDataById(String id) {
-        return scrollDataList.stream().filter(data -> data.elementId.equals(id)).findFirst().orElse(null);
+    private boolean isInsideClip(Element element, float x, float y) {
+        ScrollDataInternal scrollData;
+        synchronized (scrollDataMap) {
+            scrollData = scrollDataMap.get(element.clipElementId);
+        }
+        return scrollData == null || scrollData.boundingBox == null || scrollData.boundingBox.isInside(x, y);
     }
 
-    private boolean valueEquals(float a, float b) {
-        return (a = a - b) < TOLERANCE && a > -TOLERANCE;
+    /**
+     * Grows the smallest or shrinks the largest candidates to a common level until less than {@link #TOLERANCE} is left to
+     * distribute or every candidate reached its limit (max size when growing, min size when shrinking).
+     * <p>
+     * Candidates are sorted by size once, then the level is raised from one candidate size or limit to the next. Candidates
+     * the level reached are kept in a heap ordered by their limit at the front of the array, so nothing is removed from a
+     * list and the whole distribution takes O(n log n).
+     */
+    static void distribute(int[] candidates, int count, float[] sizes, float[] limits, float sizeToDistribute, boolean grow) {
+        // Shrinking is growing the negated sizes
+        float sign = grow ? 1f : -1f;
+        IntArrays.quickSort(candidates, 0, count, (a, b) -> Float.compare(sign * sizes[a], sign * sizes[b]));
+        IntComparator byLimit = (a, b) -> Float.compare(sign * limits[a], sign * limits[b]);
+        float remaining = sign * sizeToDistribute;
+        float level = 0f, target, cost;
+        int active = 0, next = 0, child;
+        while (remaining > TOLERANCE) {
+            if (active == 0) {
+                if (next == count) {
+                    break;
+                }
+                level = sign * sizes[candidates[next]];
+            }
+            while (next < count && sign * sizes[candidates[next]] <= level) {
+                child = candidates[next++];
+                if (sign * limits[child] <= level) {
+                    // Already at or past its limit
+                    remaining -= sign * (limits[child] - sizes[child]);
+                    sizes[child] = limits[child];
+                    continue;
+                }
+                candidates[active] = child;
+                IntHeaps.upHeap(candidates, active + 1, active, byLimit);
+                active++;
+            }
+            if (active == 0) {
+                continue;
+            }
+            target = sign * limits[candidates[0]];
+            if (next < count) {
+                target = Math.min(target, sign * sizes[candidates[next]]);
+            }
+            cost = (target - level) * active;
+            if (cost >= remaining) {
+                level += remaining / active;
+                break;
+            }
+            remaining -= cost;
+            level = target;
+            while (active > 0 && sign * limits[candidates[0]] <= level) {
+                child = candidates[0];
+                sizes[child] = limits[child];
+                candidates[0] = candidates[--active];
+                if (active != 0) {
+                    IntHeaps.downHeap(candidates, active, 0, byLimit);
+                }
+            }
+        }
+        for (int i = 0; i < active; i++) {
+            sizes[candidates[i]] = sign * level;
+        }
     }
 
 }
@@ -0,0 +1,118 @@
+package me.lauriichan.clay4j;
+
+import me.lauriichan.clay4j.IElementConfig.Text.WrapMode;
+import me.lauriichan.clay4j.Layout.HAlignment;
+import me.lauriichan.clay4j.Layout.LayoutDirection;
+import me.lauriichan.clay4j.Layout.VAlignment;
+
+/**
+ * Flattened form of a layout, interned by the layout context so equal layouts share one descriptor and one layout instance.
+ * Layouts of text elements are not interned, their text makes almost every one of them unique.
+ * <p>
+ * The sizings, the padding and the built-in configs are unpacked into primitive fields once, declaring and laying out an
+ * element only reads these fields.
+ */
+final class LayoutDescriptor {
+
+    final Layout layout;
+
+    // Sizing types of the element store, the min and max of min max sizings and the percentage of percentage sizings
+    final byte widthType, heightType;
+    final float widthMin, widthMax, widthPercentage;
+    final float heightMin, heightMax, heightPercentage;
+
+    final float paddingLeft, paddingRight, paddingTop, paddingBottom;
+    final float paddingX, paddingY;
+    final int childGap;
+
+    final boolean leftToRight;
+    final HAlignment childHorizontalAlignment;
+    final VAlignment childVerticalAlignment;
+
+    final boolean clipsHorizontal, clipsVertical, floating, text, hasAspectRatio;
+    final float aspectRatio;
+
+    // Layout flags of the element store
+    final byte flags;
+
+    LayoutDescriptor(Layout layout) {
+        this.layout = layout;
+
+        ISizing sizing = layout.width();
+        widthType = storeType(sizing.type());
+        if (sizing.type() == ISizing.Type.PERCENTAGE) {
+            widthPercentage = sizing.percentage();
+            widthMin = widthMax = 0f;
+        } else {
+            widthPercentage = 0f;
+            widthMin = sizing.minMax().min();
+            widthMax = sizing.minMax().max();
+        }
+        sizing = layout.height();
+        heightType = storeType(sizing.type());
+        if (sizing.type() == ISizing.Type.PERCENTAGE) {
+            heightPercentage = sizing.percentage();
+            heightMin = heightMax = 0f;
+        } else {
+            heightPercentage = 0f;
+            heightMin = sizing.minMax().min();
+            heightMax = sizing.minMax().max();
+        }
+
+        Layout.Padding padding = layout.padding();
+        paddingLeft = padding.left();
+        paddingRight = padding.right();
+        paddingTop = padding.top();
+        paddingBottom = padding.bottom();
+        paddingX = paddingLeft + paddingRight;
+        paddingY = paddingTop + paddingBottom;
+        childGap = layout.childGap();
+
+        leftToRight = layout.layoutDirection() == LayoutDirection.LEFT_TO_RIGHT;
+        childHorizontalAlignment = layout.childHorizontalAlignment();
+        childVerticalAlignment = layout.childVerticalAlignment();
+
+        IElementConfig.Clip clip = layout.configOrNull(IElementConfig.Clip.class);
+        clipsHorizontal = clip != null && clip.horizontal();
+        clipsVertical = clip != null && clip.vertical();
+        floating = layout.configOrNull(IElementConfig.Floating.class) != null;
+        IElementConfig.Text textConfig = layout.configOrNull(IElementConfig.Text.class);
+        text = textConfig != null;
+        IElementConfig.AspectRatio aspectRatioConfig = layout.configOrNull(IElementConfig.AspectRatio.class);
+        hasAspectRatio = aspectRatioConfig != null;
+        aspectRatio = hasAspectRatio ? aspectRatioConfig.aspectRatio() : 0f;
+
+        byte flag = 0;
+        if (leftToRight) {
+            flag |= ElementStore.LEFT_TO_RIGHT;
+        }
+        if (clipsHorizontal) {
+            flag |= ElementStore.CLIPS_HORIZONTAL;
+        }
+        if (clipsVertical) {
+            flag |= ElementStore.CLIPS_VERTICAL;
+        }
+        if (text && textConfig.wrapMode() != WrapMode.WRAP_WORDS) {
+            flag |= ElementStore.UNWRAPPED_TEXT;
+        }
+        if (hasAspectRatio) {
+            flag |= ElementStore.ASPECT_RATIO;
+        }
+        this.flags = flag;
+    }
+
+    private static byte storeType(ISizing.Type type) {
+        switch (type) {
+        default:
+        case FIT:
+            return ElementStore.FIT;
+        case FIXED:
+            return ElementStore.FIXED;
+        case GROW:
+            return ElementStore.GROW;
+        case PERCENTAGE:
+            return ElementStore.PERCENTAGE;
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package me.lauriichan.clay4j;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event of a profiled layout, only committed while the event is enabled in a recording.
+ */
+@Name("me.lauriichan.clay4j.Layout")
+@Label("Layout")
+@Category("Clay4j")
+@Description("Calculation of a layout")
+@StackTrace(false)
+final class LayoutEvent extends Event {
+
+    @Label("Frame")
+    long frame;
+
+    @Label("Sort Roots")
+    @Timespan
+    long sortRoots;
+
+    @Label("Size X")
+    @Timespan
+    long sizeX;
+
+    @Label("Wrap Text")
+    @Timespan
+    long wrapText;
+
+    @Label("Scale Aspect Vertical")
+    @Timespan
+    long scaleAspectVertical;
+
+    @Label("Propagate Vertical Effects")
+    @Timespan
+    long propagateVerticalEffects;
+
+    @Label("Size Y")
+    @Timespan
+    long sizeY;
+
+    @Label("Scale Aspect Horizontal")
+    @Timespan
+    long scaleAspectHorizontal;
+
+    @Label("Apply Sizes")
+    @Timespan
+    long applySizes;
+
+    @Label("Position")
+    @Timespan
+    long position;
+
+    @Label("Build Spatial Index")
+    @Timespan
+    long buildSpatialIndex;
+
+    @Label("Elements")
+    int elements;
+
+    @Label("Text Elements")
+    int textElements;
+
+    @Label("Render Commands")
+    int renderCommands;
+
+    @Label("Text Cache Hits")
+    long textCacheHits;
+
+    @Label("Text Cache Misses")
+    long textCacheMisses;
+
+    @Label("Font Calls")
+    long fontCalls;
+
+}
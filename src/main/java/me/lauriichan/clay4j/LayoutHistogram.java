@@ -0,0 +1,145 @@
+package me.lauriichan.clay4j;
+
+import java.util.Arrays;
+
+/**
+ * Rolling histogram of the timings of the last layouts recorded by a {@link LayoutProfiler}.
+ * <p>
+ * Every method without a pass refers to the time of the whole layout. Samples are bucketed by powers of two, bucket
+ * {@code i} contains the samples from {@code 2^(i-1)} (inclusive) to {@code 2^i} (exclusive) nanoseconds.
+ */
+public final class LayoutHistogram {
+
+    public static final int BUCKET_COUNT = 64;
+
+    private static final int TOTAL = LayoutPass.VALUES.length;
+
+    // The ring of samples of every pass, the time of the whole layout is stored last
+    private final long[][] samples;
+    private final int[][] buckets;
+    private int cursor = 0, size = 0;
+
+    LayoutHistogram(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity has to be positive");
+        }
+        this.samples = new long[TOTAL + 1][capacity];
+        this.buckets = new int[TOTAL + 1][BUCKET_COUNT];
+    }
+
+    public int capacity() {
+        return samples[0].length;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i <= TOTAL; i++) {
+            Arrays.fill(buckets[i], 0);
+        }
+        cursor = size = 0;
+    }
+
+    public long percentile(double percentile) {
+        return percentile(TOTAL, percentile);
+    }
+
+    /**
+     * Returns the smallest sample of the pass that is greater or equal to the given percentage of samples, the percentile is
+     * a value from 0 to 1.
+     */
+    public long percentile(LayoutPass pass, double percentile) {
+        return percentile(pass.ordinal(), percentile);
+    }
+
+    public long average() {
+        return average(TOTAL);
+    }
+
+    public long average(LayoutPass pass) {
+        return average(pass.ordinal());
+    }
+
+    public long max() {
+        return max(TOTAL);
+    }
+
+    public long max(LayoutPass pass) {
+        return max(pass.ordinal());
+    }
+
+    public int[] buckets() {
+        return buckets(TOTAL);
+    }
+
+    public int[] buckets(LayoutPass pass) {
+        return buckets(pass.ordinal());
+    }
+
+    /*
+     * Internal functions
+     */
+
+    synchronized void add(LayoutProfile profile) {
+        if (size == samples[0].length) {
+            // The oldest sample is overwritten
+            for (int i = 0; i <= TOTAL; i++) {
+                buckets[i][bucket(samples[i][cursor])]--;
+            }
+        } else {
+            size++;
+        }
+        for (LayoutPass pass : LayoutPass.VALUES) {
+            set(pass.ordinal(), profile.nanos(pass));
+        }
+        set(TOTAL, profile.nanos());
+        cursor = (cursor + 1) % samples[0].length;
+    }
+
+    private void set(int index, long nanos) {
+        samples[index][cursor] = nanos;
+        buckets[index][bucket(nanos)]++;
+    }
+
+    private synchronized long percentile(int index, double percentile) {
+        if (percentile < 0 || percentile > 1) {
+            throw new IllegalArgumentException("Percentile has to be between 0 and 1");
+        }
+        if (size == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples[index], size);
+        Arrays.sort(sorted);
+        return sorted[Math.max((int) Math.ceil(percentile * size) - 1, 0)];
+    }
+
+    private synchronized long average(int index) {
+        if (size == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += samples[index][i];
+        }
+        return sum / size;
+    }
+
+    private synchronized long max(int index) {
+        long max = 0;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, samples[index][i]);
+        }
+        return max;
+    }
+
+    private synchronized int[] buckets(int index) {
+        return buckets[index].clone();
+    }
+
+    private static int bucket(long nanos) {
+        return Math.min(64 - Long.numberOfLeadingZeros(Math.max(nanos, 0)), BUCKET_COUNT - 1);
+    }
+
+}
@@ -0,0 +1,23 @@
+package me.lauriichan.clay4j;
+
+/**
+ * The passes of a layout calculation in the order they run, as recorded by a {@link LayoutProfiler}.
+ */
+public enum LayoutPass {
+
+    // Includes finding the roots that can be reused in retained mode
+    SORT_ROOTS,
+    SIZE_X,
+    WRAP_TEXT,
+    SCALE_ASPECT_VERTICAL,
+    PROPAGATE_VERTICAL_EFFECTS,
+    SIZE_Y,
+    SCALE_ASPECT_HORIZONTAL,
+    APPLY_SIZES,
+    // Includes merging the commands of roots that were positioned in parallel
+    POSITION,
+    BUILD_SPATIAL_INDEX;
+
+    static final LayoutPass[] VALUES = values();
+
+}
@@ -0,0 +1,94 @@
+package me.lauriichan.clay4j;
+
+import me.lauriichan.clay4j.util.DebugPrinter;
+
+/**
+ * Timings and counters of a single layout calculation.
+ * <p>
+ * Passes of root groups that are calculated in parallel are summed up, so the time of a pass can be higher than the time of
+ * the whole layout. Text cache lookups and font calls are counted since the last profiled layout, which includes the
+ * texts measured while the elements were declared.
+ */
+public final class LayoutProfile {
+
+    private final long frame;
+    private final long nanos;
+    private final long[] passNanos;
+
+    private final int elements, textElements, renderCommands;
+    private final long textCacheHits, textCacheMisses, fontCalls;
+
+    LayoutProfile(long frame, long nanos, long[] passNanos, int elements, int textElements, int renderCommands, long textCacheHits,
+        long textCacheMisses, long fontCalls) {
+        this.frame = frame;
+        this.nanos = nanos;
+        this.passNanos = passNanos;
+        this.elements = elements;
+        this.textElements = textElements;
+        this.renderCommands = renderCommands;
+        this.textCacheHits = textCacheHits;
+        this.textCacheMisses = textCacheMisses;
+        this.fontCalls = fontCalls;
+    }
+
+    /**
+     * The number of the layout, counted by the profiler starting at zero.
+     */
+    public long frame() {
+        return frame;
+    }
+
+    public long nanos() {
+        return nanos;
+    }
+
+    public long nanos(LayoutPass pass) {
+        return passNanos[pass.ordinal()];
+    }
+
+    public int elements() {
+        return elements;
+    }
+
+    public int textElements() {
+        return textElements;
+    }
+
+    public int renderCommands() {
+        return renderCommands;
+    }
+
+    public long textCacheHits() {
+        return textCacheHits;
+    }
+
+    public long textCacheMisses() {
+        return textCacheMisses;
+    }
+
+    /**
+     * The amount of words measured by the fonts, a call to {@link IFont#calculateSizes(CharSequence, int[], int, float, float[])}
+     * counts every range. Words answered by a {@link WordCache} don't call the font.
+     */
+    public long fontCalls() {
+        return fontCalls;
+    }
+
+    @Override
+    public String toString() {
+        DebugPrinter printer = new DebugPrinter();
+        printer.append("frame", frame);
+        printer.append("nanos", nanos);
+        for (LayoutPass pass : LayoutPass.VALUES) {
+            printer.append(pass.name(), passNanos[pass.ordinal()]);
+        }
+        printer.append("elements", elements);
+        printer.append("textElements", textElements);
+        printer.append("renderCommands", renderCommands);
+        printer.append("textCacheHits", textCacheHits);
+        printer.append("textCacheMisses", textCacheMisses);
+        printer.append("fontCalls", fontCalls);
+        return printer.toString();
+    }
+
+}
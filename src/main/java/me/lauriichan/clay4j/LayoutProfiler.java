@@ -0,0 +1,154 @@
+package me.lauriichan.clay4j;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the time of every pass and a few counters of each layout calculated by the {@link LayoutContext} it is set on.
+ * <p>
+ * Every recorded layout is passed to the listeners, added to the rolling {@link #histogram()} and committed as flight
+ * recorder event if the event {@code me.lauriichan.clay4j.Layout} is enabled. A layout context without profiler only checks
+ * the field once per pass, so profiling costs nothing while it is disabled. A profiler should only be set on a single layout
+ * context.
+ */
+public final class LayoutProfiler {
+
+    public static final int DEFAULT_HISTOGRAM_CAPACITY = 120;
+
+    private static final ILayoutProfileListener[] NO_LISTENERS = new ILayoutProfileListener[0];
+
+    // Passes can be recorded by multiple threads if root groups are calculated in parallel
+    private final AtomicLongArray passNanos = new AtomicLongArray(LayoutPass.VALUES.length);
+    private final LongAdder textCacheHits = new LongAdder(), textCacheMisses = new LongAdder(), fontCalls = new LongAdder();
+
+    private final LayoutHistogram histogram;
+
+    private volatile ILayoutProfileListener[] listeners = NO_LISTENERS;
+    private volatile LayoutProfile lastProfile;
+    private long frame = 0;
+
+    // Event of the layout that is currently recorded
+    private LayoutEvent event;
+
+    public LayoutProfiler() {
+        this(DEFAULT_HISTOGRAM_CAPACITY);
+    }
+
+    public LayoutProfiler(int histogramCapacity) {
+        this.histogram = new LayoutHistogram(histogramCapacity);
+    }
+
+    public synchronized void addListener(ILayoutProfileListener listener) {
+        ILayoutProfileListener[] listeners = this.listeners;
+        ILayoutProfileListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[listeners.length] = listener;
+        this.listeners = updated;
+    }
+
+    public synchronized void removeListener(ILayoutProfileListener listener) {
+        ILayoutProfileListener[] listeners = this.listeners;
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                ILayoutProfileListener[] updated = new ILayoutProfileListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, updated, 0, i);
+                System.arraycopy(listeners, i + 1, updated, i, updated.length - i);
+                this.listeners = updated;
+                return;
+            }
+        }
+    }
+
+    public LayoutHistogram histogram() {
+        return histogram;
+    }
+
+    /**
+     * The profile of the last recorded layout or null if no layout was recorded yet.
+     */
+    public LayoutProfile lastProfile() {
+        return lastProfile;
+    }
+
+    /*
+     * Internal functions
+     */
+
+    long start() {
+        LayoutEvent event = new LayoutEvent();
+        event.begin();
+        this.event = event;
+        return System.nanoTime();
+    }
+
+    /**
+     * Adds the time since the given start to the pass and returns the current time, so it can be used as start of the next
+     * pass.
+     */
+    long pass(LayoutPass pass, long start) {
+        long now = System.nanoTime();
+        passNanos.addAndGet(pass.ordinal(), now - start);
+        return now;
+    }
+
+    void textCacheHit() {
+        textCacheHits.increment();
+    }
+
+    void textCacheMiss() {
+        textCacheMisses.increment();
+    }
+
+    void fontCalls(int words) {
+        fontCalls.add(words);
+    }
+
+    void finish(long start, int elements, int textElements, int renderCommands) {
+        long nanos = System.nanoTime() - start;
+        long[] passNanos = new long[LayoutPass.VALUES.length];
+        for (int i = 0; i < passNanos.length; i++) {
+            passNanos[i] = this.passNanos.getAndSet(i, 0);
+        }
+        LayoutProfile profile;
+        synchronized (this) {
+            profile = new LayoutProfile(frame++, nanos, passNanos, elements, textElements, renderCommands, textCacheHits.sumThenReset(),
+                textCacheMisses.sumThenReset(), fontCalls.sumThenReset());
+        }
+        lastProfile = profile;
+        histogram.add(profile);
+        LayoutEvent event = this.event;
+        this.event = null;
+        if (event != null) {
+            commitEvent(event, profile);
+        }
+        for (ILayoutProfileListener listener : listeners) {
+            listener.onLayout(profile);
+        }
+    }
+
+    private void commitEvent(LayoutEvent event, LayoutProfile profile) {
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.frame = profile.frame();
+        event.sortRoots = profile.nanos(LayoutPass.SORT_ROOTS);
+        event.sizeX = profile.nanos(LayoutPass.SIZE_X);
+        event.wrapText = profile.nanos(LayoutPass.WRAP_TEXT);
+        event.scaleAspectVertical = profile.nanos(LayoutPass.SCALE_ASPECT_VERTICAL);
+        event.propagateVerticalEffects = profile.nanos(LayoutPass.PROPAGATE_VERTICAL_EFFECTS);
+        event.sizeY = profile.nanos(LayoutPass.SIZE_Y);
+        event.scaleAspectHorizontal = profile.nanos(LayoutPass.SCALE_ASPECT_HORIZONTAL);
+        event.applySizes = profile.nanos(LayoutPass.APPLY_SIZES);
+        event.position = profile.nanos(LayoutPass.POSITION);
+        event.buildSpatialIndex = profile.nanos(LayoutPass.BUILD_SPATIAL_INDEX);
+        event.elements = profile.elements();
+        event.textElements = profile.textElements();
+        event.renderCommands = profile.renderCommands();
+        event.textCacheHits = profile.textCacheHits();
+        event.textCacheMisses = profile.textCacheMisses();
+        event.fontCalls = profile.fontCalls();
+        event.commit();
+    }
+
+}
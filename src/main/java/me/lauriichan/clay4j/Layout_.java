@@ -16,6 +16,11 @@ import me.lauriichan.clay4j.buildergen.ListReference.Unmodifiable;
 public record Layout_(ISizing width, ISizing height, Padding padding, int childGap, VAlignment childVerticalAlignment, HAlignment childHorizontalAlignment,
     LayoutDirection layoutDirection, boolean renderBackground, @ListReference(unmodifiable = @Unmodifiable(type = ObjectLists.class, method = "unmodifiable")) ObjectList<IElementConfig> configs) {
 
+    public Layout_ {
+        // Known config types are resolved once, so looking them up doesn't have to scan the configs
+        configs = ConfigList.of(configs);
+    }
+
     @BuilderDefault({
         "width",
         "height"
@@ -49,12 +54,15 @@ public record Layout_(ISizing width, ISizing height, Padding padding, int childG
     }
     
     public <E extends IElementConfig> Optional<E> config(Class<E> type) {
-        for (IElementConfig config : configs) {
-            if (type.isAssignableFrom(config.getClass())) {
-                return Optional.of(type.cast(config));
-            }
-        }
-        return Optional.empty();
+        return Optional.ofNullable(configOrNull(type));
+    }
+
+    /**
+     * Returns the first config of the given type or null if there is none, built-in config types are looked up in constant
+     * time.
+     */
+    public <E extends IElementConfig> E configOrNull(Class<E> type) {
+        return ((ConfigList) configs).config(type);
     }
 
     @GenerateBuilder
@@ -8,6 +8,13 @@ public record RenderCommand(String id, int zIndex, Element element, BoundingBox
     public static final String CLIPPING_START_ID = "clipping_start";
     public static final String CLIPPING_END_ID = "clipping_end";
 
+    // Kinds of the built-in commands, every other id is a custom command
+    public static final int KIND_CUSTOM = 0;
+    public static final int KIND_RECTANGLE = 1;
+    public static final int KIND_TEXT = 2;
+    public static final int KIND_CLIP_START = 3;
+    public static final int KIND_CLIP_END = 4;
+
     public RenderCommand(String id, Element element, BoundingBox boundingBox, Object data) {
         this(id, 0, element, boundingBox, data);
     }
@@ -19,4 +26,51 @@ public record RenderCommand(String id, int zIndex, Element element, BoundingBox
     public RenderCommand(String id, Element element, BoundingBox boundingBox) {
         this(id, 0, element, boundingBox, null);
     }
+
+    public int kind() {
+        return kindOf(id, data);
+    }
+
+    /**
+     * Returns the kind of a command with the given id and data, text commands need a string as data and are custom commands
+     * otherwise.
+     */
+    public static int kindOf(String id, Object data) {
+        int kind = kindOf(id);
+        return kind == KIND_TEXT && !(data instanceof String) ? KIND_CUSTOM : kind;
+    }
+
+    /**
+     * Returns the kind of the command with the given id, built-in commands use the id constants so the ids are only compared
+     * by value if they aren't the same instance.
+     */
+    public static int kindOf(String id) {
+        if (id == BACKGROUND_RECTANGLE_RENDERER_ID) {
+            return KIND_RECTANGLE;
+        }
+        if (id == TEXT_RENDERER_ID) {
+            return KIND_TEXT;
+        }
+        if (id == CLIPPING_START_ID) {
+            return KIND_CLIP_START;
+        }
+        if (id == CLIPPING_END_ID) {
+            return KIND_CLIP_END;
+        }
+        if (id == null) {
+            return KIND_CUSTOM;
+        }
+        switch (id) {
+        case BACKGROUND_RECTANGLE_RENDERER_ID:
+            return KIND_RECTANGLE;
+        case TEXT_RENDERER_ID:
+            return KIND_TEXT;
+        case CLIPPING_START_ID:
+            return KIND_CLIP_START;
+        case CLIPPING_END_ID:
+            return KIND_CLIP_END;
+        default:
+            return KIND_CUSTOM;
+        }
+    }
 }
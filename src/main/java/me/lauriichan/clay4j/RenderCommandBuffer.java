@@ -0,0 +1,270 @@
+package me.lauriichan.clay4j;
+
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.floats.FloatArrays;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrays;
+import it.unimi.dsi.fastutil.objects.ObjectList;
+import it.unimi.dsi.fastutil.objects.ObjectLists;
+
+/**
+ * Render commands of a frame stored in parallel arrays, so they can be iterated without allocating a command per entry.
+ * The layout context double buffers these, a buffer stays valid until the layout was calculated twice after it.
+ */
+public final class RenderCommandBuffer {
+
+    private int size = 0;
+    private int generation = 0;
+
+    private String[] ids = new String[0];
+    private int[] kinds = IntArrays.EMPTY_ARRAY;
+    private int[] zIndices = IntArrays.EMPTY_ARRAY;
+    private Element[] elements = new Element[0];
+    private float[] x = FloatArrays.EMPTY_ARRAY;
+    private float[] y = FloatArrays.EMPTY_ARRAY;
+    private float[] width = FloatArrays.EMPTY_ARRAY;
+    private float[] height = FloatArrays.EMPTY_ARRAY;
+    private Object[] data = ObjectArrays.EMPTY_ARRAY;
+    // Range of the line inside of the text of text commands
+    private int[] textStarts = IntArrays.EMPTY_ARRAY;
+    private int[] textEnds = IntArrays.EMPTY_ARRAY;
+
+    private volatile ObjectList<RenderCommand> commands;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int generation() {
+        return generation;
+    }
+
+    public String id(int index) {
+        return ids[index];
+    }
+
+    /**
+     * The kind of the command, one of the {@code KIND_} constants of {@link RenderCommand}. Text commands that weren't pushed
+     * with a string are custom commands.
+     */
+    public int kind(int index) {
+        return kinds[index];
+    }
+
+    public int zIndex(int index) {
+        return zIndices[index];
+    }
+
+    public Element element(int index) {
+        return elements[index];
+    }
+
+    public float x(int index) {
+        return x[index];
+    }
+
+    public float y(int index) {
+        return y[index];
+    }
+
+    public float width(int index) {
+        return width[index];
+    }
+
+    public float height(int index) {
+        return height[index];
+    }
+
+    /**
+     * The data of the command, for text commands this is the text of the line which is created on access. Use
+     * {@link #text(int)}, {@link #textStart(int)} and {@link #textEnd(int)} to read the line without creating a string.
+     */
+    public Object data(int index) {
+        if (kinds[index] == RenderCommand.KIND_TEXT) {
+            return ((String) data[index]).substring(textStarts[index], textEnds[index]);
+        }
+        return data[index];
+    }
+
+    /**
+     * The text that contains the line of a text command, the line is the range from {@link #textStart(int)} to
+     * {@link #textEnd(int)}.
+     */
+    public String text(int index) {
+        return kinds[index] == RenderCommand.KIND_TEXT ? (String) data[index] : null;
+    }
+
+    public int textStart(int index) {
+        return textStarts[index];
+    }
+
+    public int textEnd(int index) {
+        return textEnds[index];
+    }
+
+    public RenderCommand command(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return new RenderCommand(ids[index], zIndices[index], elements[index],
+            new BoundingBox(x[index], y[index], width[index], height[index]), data(index));
+    }
+
+    /**
+     * Creates the commands of this buffer as records, this allocates and is only meant for existing callers.
+     */
+    public ObjectList<RenderCommand> asList() {
+        ObjectList<RenderCommand> commands = this.commands;
+        if (commands != null) {
+            return commands;
+        }
+        ObjectArrayList<RenderCommand> list = new ObjectArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            list.add(command(index));
+        }
+        return this.commands = ObjectLists.unmodifiable(list);
+    }
+
+    public void accept(IRenderCommandVisitor visitor) {
+        accept(visitor, 0, size);
+    }
+
+    /**
+     * Passes the commands in the given range to the visitor in order, dispatching on the kind of each command.
+     */
+    public void accept(IRenderCommandVisitor visitor, int start, int end) {
+        if (start < 0 || end > size || start > end) {
+            throw new IndexOutOfBoundsException("Range " + start + " to " + end + " is out of bounds for size " + size);
+        }
+        for (int index = start; index < end; index++) {
+            switch (kinds[index]) {
+            case RenderCommand.KIND_RECTANGLE:
+                visitor.onRectangle(zIndices[index], elements[index], x[index], y[index], width[index], height[index]);
+                break;
+            case RenderCommand.KIND_TEXT:
+                visitor.onText(zIndices[index], elements[index], x[index], y[index], width[index], height[index], (String) data[index],
+                    textStarts[index], textEnds[index]);
+                break;
+            case RenderCommand.KIND_CLIP_START:
+                visitor.onClipStart(zIndices[index], elements[index], x[index], y[index], width[index], height[index]);
+                break;
+            case RenderCommand.KIND_CLIP_END:
+                visitor.onClipEnd(zIndices[index], elements[index], x[index], y[index], width[index], height[index]);
+                break;
+            default:
+                visitor.onCustom(ids[index], zIndices[index], elements[index], x[index], y[index], width[index], height[index],
+                    data[index]);
+                break;
+            }
+        }
+    }
+
+    /*
+     * Internal functions
+     */
+
+    void clear(int generation) {
+        Arrays.fill(elements, 0, size, null);
+        Arrays.fill(data, 0, size, null);
+        this.size = 0;
+        this.generation = generation;
+        this.commands = null;
+    }
+
+    int add(String id, int zIndex, Element element, float x, float y, float width, float height, Object data) {
+        int index = size;
+        grow(size + 1);
+        set(index, id, zIndex, element, x, y, width, height, data);
+        size++;
+        return index;
+    }
+
+    int addText(int zIndex, Element element, float x, float y, float width, float height, String text, int start, int end) {
+        int index = add(RenderCommand.TEXT_RENDERER_ID, zIndex, element, x, y, width, height, text);
+        textStarts[index] = start;
+        textEnds[index] = end;
+        return index;
+    }
+
+    void insert(int index, String id, int zIndex, Element element, float x, float y, float width, float height, Object data) {
+        if (index == size) {
+            add(id, zIndex, element, x, y, width, height, data);
+            return;
+        }
+        grow(size + 1);
+        int length = size - index;
+        System.arraycopy(ids, index, ids, index + 1, length);
+        System.arraycopy(kinds, index, kinds, index + 1, length);
+        System.arraycopy(zIndices, index, zIndices, index + 1, length);
+        System.arraycopy(elements, index, elements, index + 1, length);
+        System.arraycopy(this.x, index, this.x, index + 1, length);
+        System.arraycopy(this.y, index, this.y, index + 1, length);
+        System.arraycopy(this.width, index, this.width, index + 1, length);
+        System.arraycopy(this.height, index, this.height, index + 1, length);
+        System.arraycopy(this.data, index, this.data, index + 1, length);
+        System.arraycopy(textStarts, index, textStarts, index + 1, length);
+        System.arraycopy(textEnds, index, textEnds, index + 1, length);
+        set(index, id, zIndex, element, x, y, width, height, data);
+        size++;
+    }
+
+    void copy(RenderCommandBuffer buffer, int start, int end) {
+        int length = end - start;
+        if (length <= 0) {
+            return;
+        }
+        grow(size + length);
+        System.arraycopy(buffer.ids, start, ids, size, length);
+        System.arraycopy(buffer.kinds, start, kinds, size, length);
+        System.arraycopy(buffer.zIndices, start, zIndices, size, length);
+        System.arraycopy(buffer.elements, start, elements, size, length);
+        System.arraycopy(buffer.x, start, x, size, length);
+        System.arraycopy(buffer.y, start, y, size, length);
+        System.arraycopy(buffer.width, start, width, size, length);
+        System.arraycopy(buffer.height, start, height, size, length);
+        System.arraycopy(buffer.data, start, data, size, length);
+        System.arraycopy(buffer.textStarts, start, textStarts, size, length);
+        System.arraycopy(buffer.textEnds, start, textEnds, size, length);
+        size += length;
+    }
+
+    private void set(int index, String id, int zIndex, Element element, float x, float y, float width, float height, Object data) {
+        this.ids[index] = id;
+        this.kinds[index] = RenderCommand.kindOf(id, data);
+        this.zIndices[index] = zIndex;
+        this.elements[index] = element;
+        this.x[index] = x;
+        this.y[index] = y;
+        this.width[index] = width;
+        this.height[index] = height;
+        this.data[index] = data;
+        // Text commands pushed with a string carry the whole string as line
+        this.textStarts[index] = 0;
+        this.textEnds[index] = data instanceof String text ? text.length() : 0;
+    }
+
+    private void grow(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        capacity = Math.max(capacity, Math.max(64, ids.length * 2));
+        ids = ObjectArrays.forceCapacity(ids, capacity, size);
+        kinds = IntArrays.forceCapacity(kinds, capacity, size);
+        zIndices = IntArrays.forceCapacity(zIndices, capacity, size);
+        elements = ObjectArrays.forceCapacity(elements, capacity, size);
+        x = FloatArrays.forceCapacity(x, capacity, size);
+        y = FloatArrays.forceCapacity(y, capacity, size);
+        width = FloatArrays.forceCapacity(width, capacity, size);
+        height = FloatArrays.forceCapacity(height, capacity, size);
+        data = ObjectArrays.forceCapacity(data, capacity, size);
+        textStarts = IntArrays.forceCapacity(textStarts, capacity, size);
+        textEnds = IntArrays.forceCapacity(textEnds, capacity, size);
+    }
+
+}
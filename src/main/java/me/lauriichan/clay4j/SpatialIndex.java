@@ -0,0 +1,204 @@
+package me.lauriichan.clay4j;
+
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.booleans.BooleanArrays;
+import it.unimi.dsi.fastutil.floats.FloatArrays;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrays;
+import me.lauriichan.clay4j.IElementConfig.Floating.PointerCaptureMode;
+
+/**
+ * Bounding volume hierarchy over the bounding boxes of the last layout, used for pointer hit testing.
+ * <p>
+ * The hierarchy follows the element tree and is stored flat in hit test order (roots in reverse z order, elements in
+ * pre order), every entry knows the bounds of its whole subtree and the entry after it. Children of wide elements are
+ * grouped into nodes of at most {@link #GROUP_SIZE} entries, so looking up a point only visits the subtrees that contain
+ * it.
+ */
+final class SpatialIndex {
+
+    @FunctionalInterface
+    interface IClipTest {
+
+        boolean isInside(Element element, float x, float y);
+
+    }
+
+    private static final int GROUP_SIZE = 8;
+
+    private static final int TASK_ELEMENT = 0, TASK_GROUP = 1, TASK_RANGE = 2;
+
+    private int size = 0;
+
+    // Entries, the element is null for groups
+    private Element[] elements = new Element[0];
+    private int[] parents = IntArrays.EMPTY_ARRAY;
+    private int[] skips = IntArrays.EMPTY_ARRAY;
+    private float[] minX = FloatArrays.EMPTY_ARRAY, minY = FloatArrays.EMPTY_ARRAY;
+    private float[] maxX = FloatArrays.EMPTY_ARRAY, maxY = FloatArrays.EMPTY_ARRAY;
+    private float[] boundsMinX = FloatArrays.EMPTY_ARRAY, boundsMinY = FloatArrays.EMPTY_ARRAY;
+    private float[] boundsMaxX = FloatArrays.EMPTY_ARRAY, boundsMaxY = FloatArrays.EMPTY_ARRAY;
+
+    // Roots in hit test order
+    private int rootSize = 0;
+    private int[] rootEnds = IntArrays.EMPTY_ARRAY;
+    private boolean[] rootCaptures = BooleanArrays.EMPTY_ARRAY;
+
+    // Tasks used while building
+    private final ObjectArrayList<Element> taskElements = new ObjectArrayList<>();
+    private final IntArrayList taskTypes = new IntArrayList(), taskFrom = new IntArrayList(), taskTo = new IntArrayList(),
+        taskParents = new IntArrayList();
+
+    private final IClipTest clipTest;
+
+    SpatialIndex(IClipTest clipTest) {
+        this.clipTest = clipTest;
+    }
+
+    /**
+     * Builds the hierarchy of the given roots, which have to be sorted by their z index like the render commands.
+     */
+    void build(ObjectArrayList<Element> roots) {
+        Arrays.fill(elements, 0, size, null);
+        size = 0;
+        rootSize = 0;
+        if (rootEnds.length < roots.size()) {
+            rootEnds = new int[roots.size()];
+            rootCaptures = new boolean[roots.size()];
+        }
+        for (int i = roots.size() - 1; i >= 0; i--) {
+            Element root = roots.get(i);
+            pushTask(TASK_ELEMENT, root, 0, 0, -1);
+            while (!taskTypes.isEmpty()) {
+                int last = taskTypes.size() - 1;
+                int type = taskTypes.removeInt(last);
+                Element element = taskElements.remove(last);
+                int from = taskFrom.removeInt(last), to = taskTo.removeInt(last), parent = taskParents.removeInt(last);
+                switch (type) {
+                case TASK_ELEMENT -> {
+                    if (element.culled) {
+                        // Culled subtrees can't be seen, so they can't be hovered either
+                        continue;
+                    }
+                    int index = add(element, parent);
+                    if (!element.isText && !element.children.isEmpty()) {
+                        pushTask(TASK_RANGE, element, 0, element.children.size(), index);
+                    }
+                }
+                case TASK_GROUP -> pushTask(TASK_RANGE, element, from, to, add(null, parent));
+                case TASK_RANGE -> {
+                    int count = to - from;
+                    if (count <= GROUP_SIZE) {
+                        for (int c = to - 1; c >= from; c--) {
+                            pushTask(TASK_ELEMENT, element.children.get(c), 0, 0, parent);
+                        }
+                        break;
+                    }
+                    int groupSize = Math.max(GROUP_SIZE, (count + GROUP_SIZE - 1) / GROUP_SIZE);
+                    for (int start = from + ((count - 1) / groupSize) * groupSize; start >= from; start -= groupSize) {
+                        pushTask(TASK_GROUP, element, start, Math.min(start + groupSize, to), parent);
+                    }
+                }
+                }
+            }
+            rootEnds[rootSize] = size;
+            rootCaptures[rootSize++] = root.isFloating
+                && root.layout.configOrNull(IElementConfig.Floating.class).captureMode() == PointerCaptureMode.CAPTURE;
+        }
+        // Entries always come after their parent, so going backwards every subtree is complete before its parent is reached
+        for (int index = size - 1; index >= 0; index--) {
+            if (skips[index] < index + 1) {
+                skips[index] = index + 1;
+            }
+            int parent = parents[index];
+            if (parent == -1) {
+                continue;
+            }
+            skips[parent] = Math.max(skips[parent], skips[index]);
+            boundsMinX[parent] = Math.min(boundsMinX[parent], boundsMinX[index]);
+            boundsMinY[parent] = Math.min(boundsMinY[parent], boundsMinY[index]);
+            boundsMaxX[parent] = Math.max(boundsMaxX[parent], boundsMaxX[index]);
+            boundsMaxY[parent] = Math.max(boundsMaxY[parent], boundsMaxY[index]);
+        }
+    }
+
+    /**
+     * Adds every element containing the point to the output in hit test order, stops after the first capturing floating root
+     * that contains the point.
+     */
+    void query(float x, float y, ObjectArrayList<Element> output) {
+        int index = 0;
+        for (int root = 0; root < rootSize; root++) {
+            int end = rootEnds[root];
+            boolean found = false;
+            while (index < end) {
+                if (x < boundsMinX[index] || x > boundsMaxX[index] || y < boundsMinY[index] || y > boundsMaxY[index]) {
+                    index = skips[index];
+                    continue;
+                }
+                Element element = elements[index];
+                if (element != null && x >= minX[index] && x <= maxX[index] && y >= minY[index] && y <= maxY[index]
+                    && (element.clipElementId == null || clipTest.isInside(element, x, y))) {
+                    output.add(element);
+                    found = true;
+                }
+                index++;
+            }
+            index = end;
+            if (found && rootCaptures[root]) {
+                break;
+            }
+        }
+    }
+
+    private void pushTask(int type, Element element, int from, int to, int parent) {
+        taskTypes.add(type);
+        taskElements.add(element);
+        taskFrom.add(from);
+        taskTo.add(to);
+        taskParents.add(parent);
+    }
+
+    private int add(Element element, int parent) {
+        int index = size;
+        grow(size + 1);
+        size++;
+        elements[index] = element;
+        parents[index] = parent;
+        skips[index] = 0;
+        BoundingBox box = element == null ? null : element.boundingBox;
+        if (box == null) {
+            // Groups and elements without a box only get the bounds of their children
+            minX[index] = minY[index] = boundsMinX[index] = boundsMinY[index] = Float.POSITIVE_INFINITY;
+            maxX[index] = maxY[index] = boundsMaxX[index] = boundsMaxY[index] = Float.NEGATIVE_INFINITY;
+            return index;
+        }
+        boundsMinX[index] = minX[index] = box.x;
+        boundsMinY[index] = minY[index] = box.y;
+        boundsMaxX[index] = maxX[index] = box.x + box.width;
+        boundsMaxY[index] = maxY[index] = box.y + box.height;
+        return index;
+    }
+
+    private void grow(int capacity) {
+        if (capacity <= elements.length) {
+            return;
+        }
+        capacity = Math.max(capacity, Math.max(64, elements.length * 2));
+        elements = ObjectArrays.forceCapacity(elements, capacity, size);
+        parents = IntArrays.forceCapacity(parents, capacity, size);
+        skips = IntArrays.forceCapacity(skips, capacity, size);
+        minX = FloatArrays.forceCapacity(minX, capacity, size);
+        minY = FloatArrays.forceCapacity(minY, capacity, size);
+        maxX = FloatArrays.forceCapacity(maxX, capacity, size);
+        maxY = FloatArrays.forceCapacity(maxY, capacity, size);
+        boundsMinX = FloatArrays.forceCapacity(boundsMinX, capacity, size);
+        boundsMinY = FloatArrays.forceCapacity(boundsMinY, capacity, size);
+        boundsMaxX = FloatArrays.forceCapacity(boundsMaxX, capacity, size);
+        boundsMaxY = FloatArrays.forceCapacity(boundsMaxY, capacity, size);
+    }
+
+}
@@ -0,0 +1,161 @@
+package me.lauriichan.clay4j;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectLinkedOpenHashMap;
+import me.lauriichan.clay4j.LayoutContext.MeasuredText;
+
+/**
+ * Least recently used cache of measured texts.
+ * <p>
+ * The cache is bounded by the amount of entries and by the total amount of measured words, lookups and evictions are both
+ * constant time. Entries are keyed by the text, font id, font size and letter spacing, so texts with the same hash never
+ * share an entry.
+ * <p>
+ * All functions synchronize on the cache, the layout context holds the same lock while it looks up and stores texts, so the
+ * cache can be configured and inspected from any thread.
+ */
+public final class TextCache {
+
+    static final class Key {
+
+        private String text;
+        private int fontId;
+        private float fontSize;
+        private int letterSpacing;
+        private int hash;
+
+        Key set(String text, int fontId, float fontSize, int letterSpacing) {
+            this.text = text;
+            this.fontId = fontId;
+            this.fontSize = fontSize;
+            this.letterSpacing = letterSpacing;
+            this.hash = MeasuredText.hash(text.hashCode(), fontId, fontSize, letterSpacing);
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            return obj instanceof Key other && hash == other.hash && fontId == other.fontId
+                && Float.floatToIntBits(fontSize) == Float.floatToIntBits(other.fontSize) && letterSpacing == other.letterSpacing
+                && text.equals(other.text);
+        }
+
+    }
+
+    public static final int DEFAULT_CAPACITY = 512;
+    public static final int DEFAULT_WORD_BUDGET = 16384;
+
+    // Ordered from least to most recently used
+    private final Object2ObjectLinkedOpenHashMap<Key, MeasuredText> entries = new Object2ObjectLinkedOpenHashMap<>();
+    // Only used for lookups, so hits don't allocate
+    private final Key lookup = new Key();
+
+    private int capacity = DEFAULT_CAPACITY;
+    private int wordBudget = DEFAULT_WORD_BUDGET;
+    private int wordCount = 0;
+
+    private long hits, misses, evictions;
+
+    TextCache() {}
+
+    public synchronized int capacity() {
+        return capacity;
+    }
+
+    public synchronized void setCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity can't be negative");
+        }
+        this.capacity = capacity;
+        trim();
+    }
+
+    public synchronized int wordBudget() {
+        return wordBudget;
+    }
+
+    /**
+     * Sets the maximum amount of measured words of all cached texts together, a text with more words than this is never
+     * cached.
+     */
+    public synchronized void setWordBudget(int wordBudget) {
+        if (wordBudget < 0) {
+            throw new IllegalArgumentException("Word budget can't be negative");
+        }
+        this.wordBudget = wordBudget;
+        trim();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized int wordCount() {
+        return wordCount;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    public synchronized void resetStatistics() {
+        hits = misses = evictions = 0;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        wordCount = 0;
+    }
+
+    /*
+     * Internal functions, the caller has to hold the lock of the cache
+     */
+
+    MeasuredText get(String text, int fontId, float fontSize, int letterSpacing) {
+        MeasuredText measured = entries.getAndMoveToLast(lookup.set(text, fontId, fontSize, letterSpacing));
+        lookup.text = null;
+        if (measured == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return measured;
+    }
+
+    void put(MeasuredText measured) {
+        int words = measured.words.size();
+        if (words > wordBudget || capacity == 0) {
+            return;
+        }
+        Key key = new Key().set(measured.text, measured.fontId, measured.fontSize, measured.letterSpacing);
+        MeasuredText previous = entries.putAndMoveToLast(key, measured);
+        if (previous != null) {
+            wordCount -= previous.words.size();
+        }
+        wordCount += words;
+        trim();
+    }
+
+    private void trim() {
+        while (!entries.isEmpty() && (entries.size() > capacity || wordCount > wordBudget)) {
+            wordCount -= entries.removeFirst().words.size();
+            evictions++;
+        }
+    }
+
+}
@@ -0,0 +1,236 @@
+package me.lauriichan.clay4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread safe cache of measured words which can be shared by multiple layout contexts, so every word is only measured once
+ * per font and font size.
+ * <p>
+ * Lookups don't lock and don't allocate, inserts only lock a single bin of the underlying map. A missing word is measured
+ * by the context that looked it up first, other contexts wait for its size instead of measuring it again. When the cache
+ * grows past its capacity it is cleared, words that are still in use are measured again on their next lookup.
+ */
+public final class WordCache {
+
+    private static final class Key {
+
+        private CharSequence text;
+        private int start, end;
+        private int fontId, fontSize;
+        private int hash;
+
+        Key set(int fontId, float fontSize, CharSequence text, int start, int end) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+            this.fontId = fontId;
+            this.fontSize = Float.floatToIntBits(fontSize);
+            int hash = 31 * fontId + this.fontSize;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + text.charAt(i);
+            }
+            this.hash = hash;
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Key other) || hash != other.hash || fontId != other.fontId || fontSize != other.fontSize
+                || end - start != other.end - other.start) {
+                return false;
+            }
+            for (int i = start, j = other.start; i < end; i++, j++) {
+                if (text.charAt(i) != other.text.charAt(j)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    private static record Size(float width, float height) {}
+
+    public static final int DEFAULT_CAPACITY = 65536;
+
+    // Either the size of a word or the future of a word that is measured right now
+    private final ConcurrentHashMap<Key, Object> sizes = new ConcurrentHashMap<>();
+    private final ThreadLocal<Key> lookup = ThreadLocal.withInitial(Key::new);
+
+    private final int capacity;
+
+    public WordCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public WordCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity has to be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return sizes.size();
+    }
+
+    public void clear() {
+        sizes.clear();
+    }
+
+    /**
+     * Writes the size of the given part of the text into the size array, the font is only asked if the word wasn't measured
+     * before.
+     *
+     * @return true if the font was asked for the size
+     */
+    public boolean calculateSize(IFont font, CharSequence text, int start, int end, float fontSize, float[] size) {
+        int fontId = font.id();
+        Key key = lookup.get().set(fontId, fontSize, text, start, end);
+        Object cached = sizes.get(key);
+        key.text = null;
+        if (cached == null) {
+            String word = text.subSequence(start, end).toString();
+            Key wordKey = new Key().set(fontId, fontSize, word, 0, word.length());
+            CompletableFuture<Size> pending = new CompletableFuture<>();
+            cached = claim(wordKey, pending);
+            if (cached == null) {
+                try {
+                    font.calculateSize(word, fontSize, size);
+                } catch (Throwable throwable) {
+                    fail(wordKey, pending, throwable);
+                    throw throwable;
+                }
+                complete(wordKey, pending, size[0], size[1]);
+                return true;
+            }
+        }
+        Size measured = await(cached);
+        size[0] = measured.width();
+        size[1] = measured.height();
+        return false;
+    }
+
+    /**
+     * Same as {@link IFont#calculateSizes(CharSequence, int[], int, float, float[])}, but only the words which weren't
+     * measured before are passed to the font, all of them in a single batch.
+     *
+     * @return the amount of words the font was asked for
+     */
+    public int calculateSizes(IFont font, CharSequence text, int[] ranges, int count, float fontSize, float[] sizes) {
+        int fontId = font.id();
+        Key key = lookup.get();
+        // Sizes of the words that are measured by this call or by another one right now
+        Object[] pending = null;
+        Key[] keys = null;
+        // Indices of the words that have to be measured by this call
+        int[] missing = null;
+        int missingCount = 0;
+        for (int i = 0; i < count; i++) {
+            int start = ranges[i * 2], end = ranges[i * 2 + 1];
+            Object cached = this.sizes.get(key.set(fontId, fontSize, text, start, end));
+            if (cached instanceof Size size) {
+                sizes[i * 2] = size.width();
+                sizes[i * 2 + 1] = size.height();
+                continue;
+            }
+            if (pending == null) {
+                pending = new Object[count];
+                keys = new Key[count];
+                missing = new int[count - i];
+            }
+            if (cached == null) {
+                String word = text.subSequence(start, end).toString();
+                Key wordKey = new Key().set(fontId, fontSize, word, 0, word.length());
+                CompletableFuture<Size> future = new CompletableFuture<>();
+                if ((cached = claim(wordKey, future)) == null) {
+                    keys[i] = wordKey;
+                    pending[i] = future;
+                    missing[missingCount++] = i;
+                    continue;
+                }
+            }
+            // Measured or claimed by another call since the lookup
+            pending[i] = cached;
+        }
+        key.text = null;
+        if (pending == null) {
+            return 0;
+        }
+        if (missingCount != 0) {
+            int[] missingRanges = new int[missingCount * 2];
+            for (int i = 0; i < missingCount; i++) {
+                missingRanges[i * 2] = ranges[missing[i] * 2];
+                missingRanges[i * 2 + 1] = ranges[missing[i] * 2 + 1];
+            }
+            float[] measured = new float[missingCount * 2];
+            try {
+                font.calculateSizes(text, missingRanges, missingCount, fontSize, measured);
+            } catch (Throwable throwable) {
+                for (int i = 0; i < missingCount; i++) {
+                    fail(keys[missing[i]], pending[missing[i]], throwable);
+                }
+                throw throwable;
+            }
+            for (int i = 0; i < missingCount; i++) {
+                complete(keys[missing[i]], pending[missing[i]], measured[i * 2], measured[i * 2 + 1]);
+            }
+        }
+        // Words measured by other calls are awaited last, so all words of this call are done before
+        for (int i = 0; i < count; i++) {
+            if (pending[i] != null) {
+                Size size = await(pending[i]);
+                sizes[i * 2] = size.width();
+                sizes[i * 2 + 1] = size.height();
+            }
+        }
+        return missingCount;
+    }
+
+    /**
+     * Stores the future of a word that is about to be measured and returns null, or returns the size or future that is
+     * already stored for the word.
+     */
+    private Object claim(Key key, CompletableFuture<Size> pending) {
+        if (sizes.size() >= capacity) {
+            sizes.clear();
+        }
+        return sizes.putIfAbsent(key, pending);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void complete(Key key, Object pending, float width, float height) {
+        Size size = new Size(width, height);
+        // The word isn't cached if the cache was cleared while it was measured
+        sizes.replace(key, pending, size);
+        ((CompletableFuture<Size>) pending).complete(size);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void fail(Key key, Object pending, Throwable throwable) {
+        sizes.remove(key, pending);
+        ((CompletableFuture<Size>) pending).completeExceptionally(throwable);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Size await(Object cached) {
+        if (cached instanceof Size size) {
+            return size;
+        }
+        return ((CompletableFuture<Size>) cached).join();
+    }
+
+}
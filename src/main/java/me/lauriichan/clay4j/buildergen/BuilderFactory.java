@@ -0,0 +1,15 @@
+package me.lauriichan.clay4j.buildergen;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+// Static method that is called by build() instead of the constructor
+// It has to take the same parameters as the constructor
+@Retention(SOURCE)
+@Target({
+    METHOD
+})
+public @interface BuilderFactory {}
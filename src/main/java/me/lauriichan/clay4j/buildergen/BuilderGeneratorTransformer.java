@@ -137,10 +137,15 @@ public class BuilderGeneratorTransformer implements ISourceTransformer {
 
         References buildReferences = new References();
         References references = new References();
+        String factoryMethod = null;
         for (MethodSource<?> method : methods) {
             if (!method.isStatic()) {
                 continue;
             }
+            if (method.hasAnnotation(BuilderFactory.class)) {
+                factoryMethod = method.getName();
+                continue;
+            }
             if (method.hasAnnotation(BuilderTransformer.class)) {
                 String paramName = string(method.getAnnotation(BuilderTransformer.class), "value", "");
                 ParameterSource<?> param = parameters.stream().filter(src -> src.getName().equals(paramName)).findFirst().orElse(null);
@@ -282,9 +287,12 @@ public class BuilderGeneratorTransformer implements ISourceTransformer {
                     }
                 }
             }
-            builderClass.addMethod().setName("build").setPublic()
-                .setBody(builder.insert(0, "(").insert(0, dataSource.getName()).insert(0, "return new ").append(");").toString())
-                .setReturnType(dataSource);
+            if (factoryMethod != null) {
+                builder.insert(0, "(").insert(0, factoryMethod).insert(0, "return ");
+            } else {
+                builder.insert(0, "(").insert(0, dataSource.getName()).insert(0, "return new ");
+            }
+            builderClass.addMethod().setName("build").setPublic().setBody(builder.append(");").toString()).setReturnType(dataSource);
         }
         // Create builder() method
         if (dataSource instanceof MethodHolderSource<?> holder) {
@@ -1,30 +1,190 @@
 package me.lauriichan.clay4j.data;
 
-import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.floats.FloatArrays;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.objects.AbstractObjectList;
 import it.unimi.dsi.fastutil.objects.ObjectList;
-import it.unimi.dsi.fastutil.objects.ObjectLists;
 import me.lauriichan.clay4j.IElementData;
 
 public final class TextElementData implements IElementData {
 
     public static record Line(float width, float height, String text) {}
-    
-    private final ObjectArrayList<Line> iLines = new ObjectArrayList<>();
 
-    public final float preferredWidth, preferredHeight;
-    public final ObjectList<Line> lines = ObjectLists.unmodifiable(iLines);
+    // Lines are stored as offsets into the text, so wrapping doesn't create any strings
+    private String text = "";
+    private int size = 0;
+    private int[] offsets = IntArrays.EMPTY_ARRAY;
+    private float[] sizes = FloatArrays.EMPTY_ARRAY;
+    // Line records created by the lines view, only created on access and kept until the line is replaced
+    private Line[] records;
+
+    // Source and width of the last word wrap, so wrapping can be skipped if neither changed
+    private Object wrapSource;
+    private float wrapWidth, wrapLineHeight;
+
+    // Only assigned when the data is created or reused by a pooled element
+    public float preferredWidth, preferredHeight;
+    /**
+     * The lines as records, a line and its text are created on the first access.
+     */
+    public final ObjectList<Line> lines = new AbstractObjectList<>() {
+        @Override
+        public Line get(int index) {
+            return line(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    };
 
     public TextElementData(float preferredWidth, float preferredHeight) {
         this.preferredWidth = preferredWidth;
         this.preferredHeight = preferredHeight;
     }
 
+    public String text() {
+        return text;
+    }
+
+    public int lineCount() {
+        return size;
+    }
+
+    public int lineStart(int index) {
+        checkIndex(index);
+        return offsets[index * 2];
+    }
+
+    public int lineEnd(int index) {
+        checkIndex(index);
+        return offsets[index * 2 + 1];
+    }
+
+    public float lineWidth(int index) {
+        checkIndex(index);
+        return sizes[index * 2];
+    }
+
+    public float lineHeight(int index) {
+        checkIndex(index);
+        return sizes[index * 2 + 1];
+    }
+
+    public boolean isLineEmpty(int index) {
+        checkIndex(index);
+        return offsets[index * 2] == offsets[index * 2 + 1];
+    }
+
+    public String lineText(int index) {
+        checkIndex(index);
+        return text.substring(offsets[index * 2], offsets[index * 2 + 1]);
+    }
+
+    public Line line(int index) {
+        checkIndex(index);
+        Line[] records = this.records;
+        if (records == null || records.length < offsets.length / 2) {
+            records = this.records = records == null ? new Line[offsets.length / 2] : Arrays.copyOf(records, offsets.length / 2);
+        }
+        Line line = records[index];
+        if (line == null) {
+            line = records[index] = new Line(lineWidth(index), lineHeight(index), lineText(index));
+        }
+        return line;
+    }
+
+    /**
+     * @deprecated lines are stored as offsets into the text, use {@link #reset(String)} and
+     *                 {@link #add(int, int, float, float)} instead. The text of the line is appended to the text of this data.
+     */
+    @Deprecated
     public void add(Line line) {
-        iLines.add(line);
+        int start = text.length();
+        text = text.concat(line.text());
+        add(start, text.length(), line.width(), line.height());
     }
 
+    /**
+     * @deprecated use {@link #reset(String)} instead
+     */
+    @Deprecated
     public void reset() {
-        iLines.clear();
+        reset("");
+    }
+
+    public void add(int start, int end, float width, float height) {
+        int index = size * 2;
+        if (index + 2 > offsets.length) {
+            int capacity = Math.max(16, offsets.length * 2);
+            offsets = IntArrays.forceCapacity(offsets, capacity, index);
+            sizes = FloatArrays.forceCapacity(sizes, capacity, index);
+        }
+        offsets[index] = start;
+        offsets[index + 1] = end;
+        sizes[index] = width;
+        sizes[index + 1] = height;
+        if (records != null && records.length > size) {
+            records[size] = null;
+        }
+        size++;
+    }
+
+    /**
+     * Removes all lines and replaces the preferred size, used when the data is reused for a new element.
+     */
+    public void reset(float preferredWidth, float preferredHeight) {
+        this.preferredWidth = preferredWidth;
+        this.preferredHeight = preferredHeight;
+        reset("");
+    }
+
+    public void reset(String text) {
+        this.text = text;
+        this.size = 0;
+        this.wrapSource = null;
+    }
+
+    /**
+     * Checks if the lines are the result of wrapping the given source at the given width and line height.
+     */
+    public boolean isWrapped(Object source, float width, float lineHeight, float tolerance) {
+        if (wrapSource != source || wrapLineHeight != lineHeight) {
+            return false;
+        }
+        float difference = wrapWidth - width;
+        return difference < tolerance && difference > -tolerance;
+    }
+
+    public void setWrapped(Object source, float width, float lineHeight) {
+        this.wrapSource = source;
+        this.wrapWidth = width;
+        this.wrapLineHeight = lineHeight;
+    }
+
+    public void copyLines(TextElementData other) {
+        int length = other.size * 2;
+        if (length > offsets.length) {
+            offsets = new int[length];
+            sizes = new float[length];
+        }
+        System.arraycopy(other.offsets, 0, offsets, 0, length);
+        System.arraycopy(other.sizes, 0, sizes, 0, length);
+        this.text = other.text;
+        this.size = other.size;
+        this.records = null;
+        this.wrapSource = other.wrapSource;
+        this.wrapWidth = other.wrapWidth;
+        this.wrapLineHeight = other.wrapLineHeight;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
     }
 
 }
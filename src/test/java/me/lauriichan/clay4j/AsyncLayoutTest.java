@@ -0,0 +1,139 @@
+package me.lauriichan.clay4j;
+
+import static me.lauriichan.clay4j.LayoutSnapshot.assertSameCommands;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.junit.jupiter.api.Test;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import me.lauriichan.clay4j.Layout.LayoutDirection;
+import me.lauriichan.clay4j.Layout.Padding;
+import me.lauriichan.clay4j.benchmark.TreeShape;
+
+/**
+ * Declares the next frame while the layout of the last one is pending on an executor, which only runs the layout when the
+ * test lets it. The layout has to match a synchronous layout of the same tree and the declaration may only touch the frame
+ * that is declared.
+ */
+public class AsyncLayoutTest {
+
+    private static final int FRAMES = 8;
+
+    /**
+     * Queues the layouts until they are run by the test.
+     */
+    private static final class QueuedExecutor implements Executor {
+
+        private final ObjectArrayList<Runnable> tasks = new ObjectArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.remove(0).run();
+            }
+        }
+
+    }
+
+    @Test
+    public void matchesSynchronousLayout() {
+        QueuedExecutor executor = new QueuedExecutor();
+        LayoutContext context = new LayoutContext(TreeShape.WIDTH, TreeShape.HEIGHT);
+        declare(context, 0);
+        for (int frame = 0; frame < FRAMES; frame++) {
+            CompletableFuture<RenderCommandBuffer> layout = context.calculateLayoutAsync(executor);
+            assertFalse(layout.isDone(), "frame " + frame + ", layout ran before the executor");
+            // Declare the next frame while this one is pending
+            declare(context, frame + 1);
+            executor.runAll();
+            RenderCommandBuffer buffer = layout.join();
+            assertSame(context.commandBuffer(), buffer, "frame " + frame + ", published buffer");
+
+            LayoutContext expected = new LayoutContext(TreeShape.WIDTH, TreeShape.HEIGHT);
+            declare(expected, frame);
+            expected.calculateLayout();
+            assertSameCommands(LayoutSnapshot.of(expected), LayoutSnapshot.of(context), "frame " + frame);
+        }
+    }
+
+    @Test
+    public void onlyTouchesDeclaringFrame() {
+        QueuedExecutor executor = new QueuedExecutor();
+        LayoutContext context = new LayoutContext(800f, 600f);
+        buildList(context, "a");
+        Element pendingList = context.elementById("a-list");
+        CompletableFuture<RenderCommandBuffer> layout = context.calculateLayoutAsync(executor);
+
+        // The declaring frame is empty until the next frame is declared into it
+        assertNull(context.elementById("a-list"), "element of the pending frame is visible");
+        context.reset();
+        buildList(context, "b");
+        assertNull(context.elementById("a-list"), "element of the pending frame is visible after the reset");
+        assertNotNull(context.elementById("b-list"), "element of the declaring frame is missing");
+
+        // Containers of the pending frame are not laid out yet, but have to be kept
+        context.updateScrollContainers(false, 0f, -20f, 0.016f);
+        assertTrue(context.scrollDataMap.containsKey("a-list"), "container of the pending frame was removed");
+        assertTrue(context.scrollDataMap.containsKey("b-list"), "container of the declaring frame was removed");
+        assertNull(context.scrollDataMap.get("a-list").boundingBox, "container of the pending frame was laid out");
+
+        // A second reset only clears the declaring frame again
+        context.reset();
+        assertNull(context.elementById("b-list"), "reset kept the declaring frame");
+        buildList(context, "b");
+
+        executor.runAll();
+        layout.join();
+        LayoutContext expected = new LayoutContext(800f, 600f);
+        buildList(expected, "a");
+        expected.calculateLayout();
+        assertSameCommands(LayoutSnapshot.of(expected), LayoutSnapshot.of(context), "pending frame");
+        assertSame(pendingList, context.commandBuffer().element(0), "commands don't refer to the pending frame");
+        assertNotNull(pendingList.boundingBox, "pending frame was not laid out");
+        assertSame(pendingList, context.scrollDataMap.get("a-list").element, "scroll data of the pending frame");
+        assertNotNull(context.elementById("b-list"), "layout replaced the declaring frame");
+        assertNull(context.elementById("a-list"), "layout replaced the declaring frame");
+
+        // Once the declared frame is submitted, the containers of the old frame are removed
+        layout = context.calculateLayoutAsync(executor);
+        context.updateScrollContainers(false, 0f, 0f, 0.016f);
+        assertFalse(context.scrollDataMap.containsKey("a-list"), "container of the old frame was kept");
+        assertTrue(context.scrollDataMap.containsKey("b-list"), "container of the pending frame was removed");
+        executor.runAll();
+        layout.join();
+        assertEquals("b-list", context.commandBuffer().element(0).elementId(), "second layout");
+    }
+
+    private static void declare(LayoutContext context, int frame) {
+        context.reset();
+        TreeShape.values()[frame % TreeShape.values().length].build(context, 20 + frame * 5);
+    }
+
+    private static void buildList(LayoutContext context, String prefix) {
+        Element.Builder builder = context.newRoot();
+        builder.elementId(prefix + "-list").layout().width(ISizing.fixed(300)).height(ISizing.fixed(200))
+            .layoutDirection(LayoutDirection.TOP_TO_BOTTOM).padding(new Padding(2)).childGap(2).renderBackground(true)
+            .addConfigs(IElementConfig.Clip.builder().vertical(true).build());
+        try (Element list = builder.build()) {
+            for (int index = 0; index < 30; index++) {
+                builder = list.newElement();
+                builder.elementId(prefix + "-item" + index).layout().width(ISizing.fixed(296)).height(ISizing.fixed(18))
+                    .renderBackground(true);
+                builder.build().close();
+            }
+        }
+    }
+
+}
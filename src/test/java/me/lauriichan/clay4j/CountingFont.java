@@ -0,0 +1,52 @@
+package me.lauriichan.clay4j;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed-advance font that counts how often every text was passed to {@link #calculateSize(String, float, float[])}, it can
+ * be used from multiple threads.
+ */
+final class CountingFont implements IFont {
+
+    private final ConcurrentHashMap<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+    private final AtomicInteger totalCalls = new AtomicInteger();
+
+    private final int id;
+    private final float advance;
+
+    CountingFont(int id, float advance) {
+        this.id = id;
+        this.advance = advance;
+    }
+
+    @Override
+    public int id() {
+        return id;
+    }
+
+    @Override
+    public void calculateSize(String text, float fontSize, float[] size) {
+        calls.computeIfAbsent(fontSize + " " + text, ignored -> new AtomicInteger()).incrementAndGet();
+        totalCalls.incrementAndGet();
+        size[0] = text.length() * advance * fontSize;
+        size[1] = fontSize;
+    }
+
+    /**
+     * The amount of times the text was measured with the font size.
+     */
+    int calls(String text, float fontSize) {
+        AtomicInteger count = calls.get(fontSize + " " + text);
+        return count == null ? 0 : count.get();
+    }
+
+    int totalCalls() {
+        return totalCalls.get();
+    }
+
+    int distinctTexts() {
+        return calls.size();
+    }
+
+}
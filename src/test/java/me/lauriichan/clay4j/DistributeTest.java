@@ -0,0 +1,198 @@
+package me.lauriichan.clay4j;
+
+import static me.lauriichan.clay4j.LayoutContext.TOLERANCE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * Compares {@link LayoutContext#distribute(int[], int, float[], float[], float, boolean)} with the grow and shrink loops it
+ * replaced, which are kept below as reference.
+ */
+public class DistributeTest {
+
+    private static final int RUNS = 20000;
+
+    @Test
+    public void growsToCommonLevel() {
+        float[] sizes = {
+            10f,
+            20f,
+            30f
+        };
+        distribute(sizes, unlimited(3), 30f, true);
+        assertEquals(30f, sizes[0], TOLERANCE);
+        assertEquals(30f, sizes[1], TOLERANCE);
+        assertEquals(30f, sizes[2], TOLERANCE);
+    }
+
+    @Test
+    public void shrinksToMinSizes() {
+        float[] sizes = {
+            10f,
+            20f,
+            30f
+        };
+        distribute(sizes, new float[] {
+            0f,
+            0f,
+            25f
+        }, -10f, false);
+        assertEquals(10f, sizes[0], TOLERANCE);
+        assertEquals(15f, sizes[1], TOLERANCE);
+        assertEquals(25f, sizes[2], TOLERANCE);
+    }
+
+    @Test
+    public void matchesOldLoops() {
+        Random random = new Random(1);
+        for (int run = 0; run < RUNS; run++) {
+            int count = 1 + random.nextInt(run % 10 == 0 ? 300 : 12);
+            float[] sizes = new float[count], minSizes = new float[count], maxSizes = new float[count];
+            float total = 0f;
+            for (int i = 0; i < count; i++) {
+                sizes[i] = random.nextInt(4) == 0 ? 20f : random.nextInt(100) + (random.nextBoolean() ? random.nextFloat() : 0f);
+                minSizes[i] = random.nextInt(3) == 0 ? sizes[i] : random.nextFloat() * sizes[i];
+                maxSizes[i] = random.nextInt(3) == 0 ? Float.MAX_VALUE : sizes[i] + random.nextInt(80);
+                total += sizes[i];
+            }
+            boolean grow = random.nextBoolean();
+            float sizeToDistribute = (grow ? 1f : -1f) * random.nextFloat() * total;
+            float[] expected = sizes.clone(), actual = sizes.clone();
+            IntArrayList resizeable = new IntArrayList(count);
+            for (int i = 0; i < count; i++) {
+                resizeable.add(i);
+            }
+            if (grow) {
+                oldGrow(resizeable, expected, maxSizes, sizeToDistribute);
+            } else {
+                oldShrink(resizeable, expected, minSizes, sizeToDistribute);
+            }
+            distribute(actual, grow ? maxSizes : minSizes, sizeToDistribute, grow);
+
+            float expectedTotal = 0f, actualTotal = 0f;
+            for (int i = 0; i < count; i++) {
+                // The old loops accumulate float errors over their iterations, so allow twice the tolerance
+                assertEquals(expected[i], actual[i], 2 * TOLERANCE, "run " + run + ", size " + i);
+                if (grow) {
+                    assertTrue(actual[i] >= sizes[i] && actual[i] <= maxSizes[i], "run " + run + ", size " + i + " out of range");
+                } else {
+                    assertTrue(actual[i] <= sizes[i] && actual[i] >= minSizes[i], "run " + run + ", size " + i + " out of range");
+                }
+                expectedTotal += expected[i];
+                actualTotal += actual[i];
+            }
+            assertEquals(expectedTotal, actualTotal, TOLERANCE * count, "run " + run + ", total");
+        }
+    }
+
+    private static void distribute(float[] sizes, float[] limits, float sizeToDistribute, boolean grow) {
+        int[] candidates = new int[sizes.length];
+        for (int i = 0; i < candidates.length; i++) {
+            candidates[i] = i;
+        }
+        LayoutContext.distribute(candidates, candidates.length, sizes, limits, sizeToDistribute, grow);
+    }
+
+    private static float[] unlimited(int count) {
+        float[] limits = new float[count];
+        for (int i = 0; i < count; i++) {
+            limits[i] = Float.MAX_VALUE;
+        }
+        return limits;
+    }
+
+    /*
+     * Reference
+     */
+
+    private static void oldShrink(IntArrayList resizeable, float[] sizes, float[] minSizes, float sizeToDistribute) {
+        int i, child;
+        float size, largest, secondLargest, sizeToAdd, minAxis, previousSize;
+        while (sizeToDistribute < -TOLERANCE && !resizeable.isEmpty()) {
+            largest = 0;
+            secondLargest = 0;
+            sizeToAdd = sizeToDistribute;
+            for (i = 0; i < resizeable.size(); i++) {
+                size = sizes[resizeable.getInt(i)];
+                if (valueEquals(size, largest)) {
+                    continue;
+                }
+                if (size > largest) {
+                    secondLargest = largest;
+                    largest = size;
+                }
+                if (size < largest) {
+                    secondLargest = Math.max(secondLargest, size);
+                    sizeToAdd = secondLargest - largest;
+                }
+            }
+            sizeToAdd = Math.max(sizeToAdd, sizeToDistribute / resizeable.size());
+            for (i = 0; i < resizeable.size(); i++) {
+                child = resizeable.getInt(i);
+                size = sizes[child];
+                minAxis = minSizes[child];
+                previousSize = size;
+                if (valueEquals(size, largest)) {
+                    size += sizeToAdd;
+                    if (size <= minAxis) {
+                        size = minAxis;
+                        resizeable.removeInt(i--);
+                    }
+                    sizeToDistribute -= (size - previousSize);
+                    sizes[child] = size;
+                }
+            }
+        }
+    }
+
+    private static void oldGrow(IntArrayList resizeable, float[] sizes, float[] maxSizes, float sizeToDistribute) {
+        int i, child;
+        float size, smallest, secondSmallest, sizeToAdd, maxSize, previousSize;
+        while (sizeToDistribute > TOLERANCE && !resizeable.isEmpty()) {
+            smallest = Float.MAX_VALUE;
+            secondSmallest = Float.MAX_VALUE;
+            sizeToAdd = sizeToDistribute;
+            for (i = 0; i < resizeable.size(); i++) {
+                size = sizes[resizeable.getInt(i)];
+                if (valueEquals(size, smallest)) {
+                    continue;
+                }
+                if (size < smallest) {
+                    secondSmallest = smallest;
+                    smallest = size;
+                }
+                if (size > smallest) {
+                    secondSmallest = Math.min(secondSmallest, size);
+                    sizeToAdd = secondSmallest - smallest;
+                }
+            }
+            sizeToAdd = Math.min(sizeToAdd, sizeToDistribute / resizeable.size());
+            for (i = 0; i < resizeable.size(); i++) {
+                child = resizeable.getInt(i);
+                size = sizes[child];
+                maxSize = maxSizes[child];
+                previousSize = size;
+                if (valueEquals(size, smallest)) {
+                    size += sizeToAdd;
+                    if (size >= maxSize) {
+                        size = maxSize;
+                        resizeable.removeInt(i--);
+                    }
+                    sizeToDistribute -= (size - previousSize);
+                    sizes[child] = size;
+                }
+            }
+        }
+    }
+
+    private static boolean valueEquals(float a, float b) {
+        return (a = a - b) < TOLERANCE && a > -TOLERANCE;
+    }
+
+}
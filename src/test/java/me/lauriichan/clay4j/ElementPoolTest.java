@@ -0,0 +1,134 @@
+package me.lauriichan.clay4j;
+
+import static me.lauriichan.clay4j.LayoutSnapshot.assertSameCommands;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import me.lauriichan.clay4j.IElementConfig.Text.WrapMode;
+import me.lauriichan.clay4j.Layout.LayoutDirection;
+import me.lauriichan.clay4j.Layout.Padding;
+import me.lauriichan.clay4j.benchmark.BenchmarkFont;
+import me.lauriichan.clay4j.data.TextElementData;
+
+/**
+ * Lays out the same changing frames with and without element pooling. Elements, their bounding boxes and their text data may
+ * only be reused once two more layouts were calculated after their frame was reset, until then the boxes keep the geometry of
+ * their layout.
+ */
+public class ElementPoolTest {
+
+    private static final int FRAMES = 12, ITEMS = 40;
+
+    private static final IFont FONT = new BenchmarkFont(1, 0.5f);
+
+    @Test
+    public void reusesElementsAfterTwoLayouts() {
+        LayoutContext pooled = new LayoutContext(600f, 800f);
+        pooled.setElementPooling(true);
+        ObjectArrayList<Frame> frames = new ObjectArrayList<>();
+        for (int frame = 0; frame < FRAMES; frame++) {
+            String message = "frame " + frame;
+            ObjectArrayList<String> expected = frame(new LayoutContext(600f, 800f), frame);
+            assertSameCommands(expected, frame(pooled, frame), message);
+            Frame current = new Frame(pooled);
+            for (int previous = Math.max(frame - 2, 0); previous < frame; previous++) {
+                Frame old = frames.get(previous);
+                for (Object instance : current.instances) {
+                    assertFalse(old.instances.contains(instance), message + ", reused instance of frame " + previous + ": " + instance);
+                }
+                for (Object2ObjectOpenHashMap.Entry<BoundingBox, String> entry : old.geometry.object2ObjectEntrySet()) {
+                    assertEquals(entry.getValue(), entry.getKey().toString(), message + ", box of frame " + previous + " changed");
+                }
+            }
+            if (frame >= 3) {
+                int reused = 0;
+                for (Object instance : current.instances) {
+                    if (frames.get(frame - 3).instances.contains(instance)) {
+                        reused++;
+                    }
+                }
+                assertEquals(current.instances.size(), reused, message + ", instances of frame " + (frame - 3) + " reused");
+            }
+            frames.add(current);
+        }
+    }
+
+    @Test
+    public void neverReusesHoveredElements() {
+        LayoutContext context = new LayoutContext(600f, 800f);
+        context.setElementPooling(true);
+        frame(context, 0);
+        BoundingBox box = context.elementById("item5").boundingBox;
+        context.setPointer(box.x() + 1, box.y() + 1, false);
+        Element hovered = context.elementById("item5");
+        assertTrue(context.hoveredElements().contains(hovered), "item is not hovered");
+        String geometry = box.toString();
+        for (int frame = 1; frame < FRAMES; frame++) {
+            frame(context, frame);
+            for (Object instance : new Frame(context).instances) {
+                assertFalse(instance == hovered || instance == box, "frame " + frame + ", reused hovered element");
+            }
+            assertTrue(context.hoveredElements().contains(hovered), "frame " + frame + ", hovered element was removed");
+            assertEquals(geometry, box.toString(), "frame " + frame + ", box of hovered element changed");
+        }
+    }
+
+    private static ObjectArrayList<String> frame(LayoutContext context, int frame) {
+        context.reset();
+        float width = 400f + frame % 4 * 40f;
+        Element.Builder builder = context.newRoot();
+        builder.elementId("root").layout().width(ISizing.fixed(width)).height(ISizing.fit())
+            .layoutDirection(LayoutDirection.TOP_TO_BOTTOM).padding(new Padding(2)).childGap(2);
+        try (Element root = builder.build()) {
+            for (int index = 0; index < ITEMS; index++) {
+                builder = root.newElement();
+                builder.elementId("item" + index).layout().width(ISizing.fixed(width - 4)).padding(new Padding(2)).renderBackground(true);
+                try (Element item = builder.build()) {
+                    builder = item.newElement();
+                    builder.elementId("text" + index).layout().width(ISizing.fixed(width - 8))
+                        .addConfigs(IElementConfig.Text.builder().text("Item " + index + " of frame " + frame + " with a few words")
+                            .font(FONT).fontSize(10f + index % 3 * 2).wrapMode(WrapMode.WRAP_WORDS).build());
+                    builder.build().close();
+                }
+            }
+        }
+        context.calculateLayout();
+        return LayoutSnapshot.of(context);
+    }
+
+    /**
+     * Elements, bounding boxes and text data of a frame and the geometry of its boxes right after the layout.
+     */
+    private static final class Frame {
+
+        final ReferenceOpenHashSet<Object> instances = new ReferenceOpenHashSet<>();
+        final Object2ObjectOpenHashMap<BoundingBox, String> geometry = new Object2ObjectOpenHashMap<>();
+
+        Frame(LayoutContext context) {
+            add(context.elementById("root"));
+            for (int index = 0; index < ITEMS; index++) {
+                add(context.elementById("item" + index));
+                Element text = context.elementById("text" + index);
+                add(text);
+                TextElementData data = text.dataOrNull(TextElementData.class);
+                assertNotNull(data, "text data of text " + index);
+                instances.add(data);
+            }
+        }
+
+        private void add(Element element) {
+            instances.add(element);
+            instances.add(element.boundingBox);
+            geometry.put(element.boundingBox, element.boundingBox.toString());
+        }
+
+    }
+
+}
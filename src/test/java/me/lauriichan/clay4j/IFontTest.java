@@ -0,0 +1,93 @@
+package me.lauriichan.clay4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the default batch measurement of a font with measuring every range on its own.
+ */
+public class IFontTest {
+
+    // Measures every character by its code, so ranges of the same length get different widths
+    private static final IFont FONT = new IFont() {
+        @Override
+        public int id() {
+            return 1;
+        }
+
+        @Override
+        public void calculateSize(String text, float fontSize, float[] size) {
+            float width = 0f;
+            for (int i = 0; i < text.length(); i++) {
+                width += text.charAt(i) * fontSize / 100f;
+            }
+            size[0] = width;
+            size[1] = fontSize + text.length();
+        }
+    };
+
+    @Test
+    public void measuresRangesLikeSingleCalls() {
+        String text = "The quick brown fox, jumps\nover the lazy dog";
+        int[] ranges = {
+            0,
+            3,
+            4,
+            9,
+            10,
+            15,
+            16,
+            20,
+            // Empty, overlapping and whole ranges
+            20,
+            20,
+            4,
+            15,
+            0,
+            text.length(),
+            27,
+            31
+        };
+        int count = ranges.length / 2;
+        for (CharSequence sequence : new CharSequence[] {
+            text,
+            new StringBuilder(text)
+        }) {
+            float[] sizes = new float[count * 2];
+            FONT.calculateSizes(sequence, ranges, count, 12f, sizes);
+            float[] size = new float[2];
+            for (int i = 0; i < count; i++) {
+                String part = text.substring(ranges[i * 2], ranges[i * 2 + 1]);
+                FONT.calculateSize(part, 12f, size);
+                assertEquals(size[0], sizes[i * 2], "width of '" + part + "'");
+                assertEquals(size[1], sizes[i * 2 + 1], "height of '" + part + "'");
+            }
+        }
+    }
+
+    @Test
+    public void onlyWritesRequestedRanges() {
+        int[] ranges = {
+            0,
+            5,
+            6,
+            11,
+            99,
+            99
+        };
+        float[] sizes = {
+            -1f,
+            -1f,
+            -1f,
+            -1f,
+            -1f,
+            -1f
+        };
+        FONT.calculateSizes("hello world", ranges, 2, 10f, sizes);
+        assertEquals(-1f, sizes[4], "width after the last range");
+        assertEquals(-1f, sizes[5], "height after the last range");
+        assertEquals(15f, sizes[1], "height of hello");
+    }
+
+}
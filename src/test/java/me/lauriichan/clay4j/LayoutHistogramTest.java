@@ -0,0 +1,105 @@
+package me.lauriichan.clay4j;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Fills histograms with known samples, every sample of {@code n} nanoseconds is in bucket {@code 64 - numberOfLeadingZeros(n)}.
+ */
+public class LayoutHistogramTest {
+
+    @Test
+    public void evictsOldestSample() {
+        LayoutHistogram histogram = new LayoutHistogram(3);
+        histogram.add(profile(1));
+        histogram.add(profile(2));
+        histogram.add(profile(4));
+        assertEquals(3, histogram.size());
+        assertArrayEquals(buckets(1, 2, 3), histogram.buckets());
+
+        // Overwrites the sample of 1ns, its bucket has to be empty again
+        histogram.add(profile(8));
+        assertEquals(3, histogram.size());
+        assertArrayEquals(buckets(2, 3, 4), histogram.buckets());
+        assertEquals(2, histogram.percentile(0));
+        assertEquals(8, histogram.max());
+        assertEquals((2 + 4 + 8) / 3, histogram.average());
+
+        histogram.add(profile(8));
+        assertArrayEquals(buckets(3, 4, 4), histogram.buckets());
+        assertEquals(4, histogram.percentile(0));
+    }
+
+    @Test
+    public void bucketsEveryPass() {
+        LayoutHistogram histogram = new LayoutHistogram(2);
+        for (int nanos = 1; nanos <= 3; nanos++) {
+            long[] passNanos = new long[LayoutPass.VALUES.length];
+            passNanos[LayoutPass.POSITION.ordinal()] = nanos * 100;
+            histogram.add(new LayoutProfile(nanos, nanos, passNanos, 0, 0, 0, 0, 0, 0));
+        }
+        assertEquals(200, histogram.percentile(LayoutPass.POSITION, 0));
+        assertEquals(300, histogram.max(LayoutPass.POSITION));
+        assertEquals(0, histogram.max(LayoutPass.SIZE_X));
+        assertArrayEquals(buckets(8, 9), histogram.buckets(LayoutPass.POSITION));
+        assertArrayEquals(buckets(0, 0), histogram.buckets(LayoutPass.SIZE_X));
+    }
+
+    @Test
+    public void percentileOfBounds() {
+        LayoutHistogram histogram = new LayoutHistogram(8);
+        assertEquals(0, histogram.percentile(0));
+        assertEquals(0, histogram.percentile(1));
+        long[] samples = {
+            50,
+            10,
+            40,
+            20,
+            30
+        };
+        for (long nanos : samples) {
+            histogram.add(profile(nanos));
+        }
+        assertEquals(10, histogram.percentile(0));
+        assertEquals(30, histogram.percentile(0.5));
+        assertEquals(50, histogram.percentile(1));
+        assertThrows(IllegalArgumentException.class, () -> histogram.percentile(-0.01));
+        assertThrows(IllegalArgumentException.class, () -> histogram.percentile(1.01));
+    }
+
+    @Test
+    public void clearRemovesAllSamples() {
+        LayoutHistogram histogram = new LayoutHistogram(2);
+        histogram.add(profile(100));
+        histogram.add(profile(200));
+        histogram.add(profile(300));
+        histogram.clear();
+        assertEquals(0, histogram.size());
+        assertEquals(0, histogram.percentile(1));
+        assertEquals(0, histogram.average());
+        assertEquals(0, histogram.max());
+        assertArrayEquals(new int[LayoutHistogram.BUCKET_COUNT], histogram.buckets());
+
+        histogram.add(profile(5));
+        assertEquals(1, histogram.size());
+        assertEquals(5, histogram.percentile(0));
+        assertEquals(5, histogram.max());
+        assertArrayEquals(buckets(3), histogram.buckets());
+    }
+
+    private static LayoutProfile profile(long nanos) {
+        return new LayoutProfile(0, nanos, new long[LayoutPass.VALUES.length], 0, 0, 0, 0, 0, 0);
+    }
+
+    private static int[] buckets(int... indices) {
+        int[] buckets = new int[LayoutHistogram.BUCKET_COUNT];
+        for (int index : indices) {
+            buckets[index]++;
+        }
+        return buckets;
+    }
+
+}
@@ -0,0 +1,94 @@
+package me.lauriichan.clay4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import me.lauriichan.clay4j.IElementConfig.Text.WrapMode;
+import me.lauriichan.clay4j.Layout.LayoutDirection;
+
+/**
+ * Profiles layouts of texts with a font that counts its calls, the counters of every profile only cover its own layout.
+ */
+public class LayoutProfilerTest {
+
+    private static final String[] TEXTS = {
+        "first text of the panel",
+        "second text of the panel",
+        "first text again, with a few new words"
+    };
+
+    @Test
+    public void resetsCountersBetweenProfiles() {
+        LayoutProfiler profiler = new LayoutProfiler();
+        profiler.start();
+        profiler.textCacheHit();
+        profiler.textCacheMiss();
+        profiler.textCacheMiss();
+        profiler.fontCalls(5);
+        profiler.finish(System.nanoTime(), 1, 2, 3);
+        LayoutProfile profile = profiler.lastProfile();
+        assertEquals(0, profile.frame());
+        assertEquals(1, profile.textCacheHits());
+        assertEquals(2, profile.textCacheMisses());
+        assertEquals(5, profile.fontCalls());
+
+        profiler.start();
+        profiler.finish(System.nanoTime(), 1, 2, 3);
+        profile = profiler.lastProfile();
+        assertEquals(1, profile.frame());
+        assertEquals(0, profile.textCacheHits());
+        assertEquals(0, profile.textCacheMisses());
+        assertEquals(0, profile.fontCalls());
+        assertEquals(2, profiler.histogram().size());
+    }
+
+    @Test
+    public void countsCallsOfTheFont() {
+        countsCallsOfTheFont(null);
+    }
+
+    @Test
+    public void countsCallsOfTheFontWithWordCache() {
+        countsCallsOfTheFont(new WordCache());
+    }
+
+    private static void countsCallsOfTheFont(WordCache wordCache) {
+        CountingFont font = new CountingFont(1, 0.5f);
+        LayoutContext context = new LayoutContext(400f, 300f);
+        LayoutProfiler profiler = new LayoutProfiler();
+        context.setProfiler(profiler);
+        context.setWordCache(wordCache);
+
+        frame(context, font);
+        LayoutProfile profile = profiler.lastProfile();
+        assertEquals(TEXTS.length, profile.textCacheMisses());
+        assertEquals(font.totalCalls(), profile.fontCalls());
+
+        // Every text is cached now, so the font isn't called anymore
+        int calls = font.totalCalls();
+        frame(context, font);
+        profile = profiler.lastProfile();
+        assertEquals(0, profile.textCacheMisses());
+        assertTrue(profile.textCacheHits() >= TEXTS.length, "text cache hits");
+        assertEquals(0, profile.fontCalls());
+        assertEquals(calls, font.totalCalls());
+    }
+
+    private static void frame(LayoutContext context, IFont font) {
+        context.reset();
+        Element.Builder builder = context.newRoot();
+        builder.layout().width(ISizing.fixed(400)).height(ISizing.fixed(300)).layoutDirection(LayoutDirection.TOP_TO_BOTTOM);
+        try (Element root = builder.build()) {
+            for (String text : TEXTS) {
+                builder = root.newElement();
+                builder.layout()
+                    .addConfigs(IElementConfig.Text.builder().text(text).font(font).fontSize(10).wrapMode(WrapMode.WRAP_WORDS).build());
+                builder.build().close();
+            }
+        }
+        context.calculateLayout();
+    }
+
+}
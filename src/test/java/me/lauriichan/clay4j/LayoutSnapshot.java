@@ -0,0 +1,48 @@
+package me.lauriichan.clay4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import me.lauriichan.clay4j.benchmark.TreeShape;
+
+/**
+ * Render commands of a layout as lines of text, so the output of the different layout modes can be compared exactly.
+ */
+final class LayoutSnapshot {
+
+    private LayoutSnapshot() {}
+
+    static ObjectArrayList<String> frame(LayoutContext context, TreeShape shape, int size) {
+        context.reset();
+        shape.build(context, size);
+        context.calculateLayout();
+        return of(context);
+    }
+
+    static ObjectArrayList<String> of(LayoutContext context) {
+        RenderCommandBuffer buffer = context.commandBuffer();
+        ObjectArrayList<String> lines = new ObjectArrayList<>(buffer.size());
+        for (int index = 0; index < buffer.size(); index++) {
+            lines.add(line(buffer, index));
+        }
+        return lines;
+    }
+
+    static String line(RenderCommandBuffer buffer, int index) {
+        Element element = buffer.element(index);
+        return buffer.id(index) + ' ' + buffer.zIndex(index) + ' ' + (element == null ? null : element.elementId()) + ' '
+            + buffer.x(index) + ',' + buffer.y(index) + ',' + buffer.width(index) + ',' + buffer.height(index) + ' '
+            + buffer.data(index);
+    }
+
+    static void assertSameCommands(List<String> expected, List<String> actual, String message) {
+        int size = Math.min(expected.size(), actual.size());
+        for (int index = 0; index < size; index++) {
+            assertEquals(expected.get(index), actual.get(index), message + ", command " + index);
+        }
+        assertEquals(expected.size(), actual.size(), message + ", command count");
+    }
+
+}
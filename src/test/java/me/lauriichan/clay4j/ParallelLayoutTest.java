@@ -0,0 +1,127 @@
+package me.lauriichan.clay4j;
+
+import static me.lauriichan.clay4j.LayoutSnapshot.assertSameCommands;
+import static me.lauriichan.clay4j.LayoutSnapshot.frame;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import me.lauriichan.clay4j.IElementConfig.Floating.AttachPointType;
+import me.lauriichan.clay4j.IElementConfig.Floating.AttachToElement;
+import me.lauriichan.clay4j.IElementConfig.Floating.ClipToElement;
+import me.lauriichan.clay4j.Layout.LayoutDirection;
+import me.lauriichan.clay4j.Layout.Padding;
+import me.lauriichan.clay4j.benchmark.TreeShape;
+
+/**
+ * Lays out the same frames on the calling thread and on a layout pool with low thresholds, so roots, large subtrees and
+ * texts are all laid out in parallel. The render commands have to be identical. Floating roots that are attached to or
+ * clipped by elements of other roots have to be laid out after them.
+ */
+public class ParallelLayoutTest {
+
+    private static final int SIZE = 300;
+    private static final int FRAMES = 3;
+
+    @Test
+    public void matchesSequentialLayout() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (TreeShape shape : TreeShape.values()) {
+                LayoutContext sequential = new LayoutContext(TreeShape.WIDTH, TreeShape.HEIGHT);
+                LayoutContext parallel = parallel(pool);
+                for (int frame = 0; frame < FRAMES; frame++) {
+                    assertSameCommands(frame(sequential, shape, SIZE), frame(parallel, shape, SIZE), shape + ", frame " + frame);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void matchesSequentialLayoutInRetainedMode() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (TreeShape shape : TreeShape.values()) {
+                LayoutContext sequential = new LayoutContext(TreeShape.WIDTH, TreeShape.HEIGHT);
+                LayoutContext parallel = parallel(pool);
+                parallel.setRetainedMode(true);
+                for (int frame = 0; frame < FRAMES; frame++) {
+                    // Change the tree in the middle frame, so the retained context has to lay out parts of it again
+                    int size = frame == 1 ? SIZE + 1 : SIZE;
+                    assertSameCommands(frame(sequential, shape, size), frame(parallel, shape, size), shape + ", frame " + frame);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void matchesSequentialLayoutWithDependentRoots() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            LayoutContext sequential = new LayoutContext(TreeShape.WIDTH, TreeShape.HEIGHT);
+            // Default thresholds, so only the roots are laid out in parallel
+            LayoutContext parallel = new LayoutContext(TreeShape.WIDTH, TreeShape.HEIGHT);
+            parallel.setLayoutPool(pool);
+            for (int frame = 0; frame < FRAMES; frame++) {
+                assertSameCommands(panelsFrame(sequential, frame), panelsFrame(parallel, frame), "frame " + frame);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static ObjectArrayList<String> panelsFrame(LayoutContext context, int frame) {
+        context.reset();
+        for (int panel = 0; panel < 8; panel++) {
+            Element.Builder builder = context.newRoot();
+            builder.elementId("panel" + panel).layout().width(ISizing.fixed(200)).height(ISizing.fixed(300))
+                .layoutDirection(LayoutDirection.TOP_TO_BOTTOM).padding(new Padding(4)).childGap(2).renderBackground(true)
+                .addConfigs(IElementConfig.Clip.builder().vertical(true).yChildOffset(-10f * frame).build());
+            try (Element root = builder.build()) {
+                for (int row = 0; row < 200; row++) {
+                    builder = root.newElement();
+                    builder.elementId("panel" + panel + "row" + row).layout().width(ISizing.grow()).height(ISizing.fixed(16))
+                        .renderBackground(true);
+                    try (Element element = builder.build()) {
+                        if (row % 50 != 49) {
+                            continue;
+                        }
+                        // A root of its own, attached to and clipped by the row of another root
+                        builder = element.newElement();
+                        builder.layout().width(ISizing.fixed(40)).height(ISizing.fixed(12)).renderBackground(true)
+                            .addConfigs(IElementConfig.Floating.builder().attachTo(AttachToElement.ATTACH_TO_PARENT)
+                                .parent(AttachPointType.CENTER_RIGHT).element(AttachPointType.CENTER_LEFT)
+                                .clipTo(ClipToElement.ATTACHED_PARENT).zIndex(row % 3).build());
+                        builder.build().close();
+                    }
+                }
+            }
+        }
+        // Attached to rows of the panels by their id
+        for (int panel = 0; panel < 8; panel += 2) {
+            Element.Builder builder = context.newRoot();
+            builder.layout().width(ISizing.fixed(60)).height(ISizing.fixed(20)).renderBackground(true)
+                .addConfigs(IElementConfig.Floating.builder().attachTo(AttachToElement.ATTACH_TO_ELEMENT_WITH_ID)
+                    .elementId("panel" + panel + "row" + (190 - panel - frame)).parent(AttachPointType.BOTTOM_LEFT)
+                    .element(AttachPointType.TOP_LEFT).zIndex(5).build());
+            builder.build().close();
+        }
+        context.calculateLayout();
+        return LayoutSnapshot.of(context);
+    }
+
+    private static LayoutContext parallel(ForkJoinPool pool) {
+        LayoutContext context = new LayoutContext(TreeShape.WIDTH, TreeShape.HEIGHT);
+        context.setLayoutPool(pool);
+        context.setParallelSizingThreshold(16);
+        context.setParallelTextThreshold(4);
+        return context;
+    }
+
+}
@@ -0,0 +1,114 @@
+package me.lauriichan.clay4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+/**
+ * Passes commands of every kind to visitors and checks which method received them.
+ */
+public class RenderCommandBufferTest {
+
+    private static final class RecordingVisitor implements IRenderCommandVisitor {
+
+        private final ObjectArrayList<String> calls = new ObjectArrayList<>();
+
+        @Override
+        public void onRectangle(int zIndex, Element element, float x, float y, float width, float height) {
+            calls.add("rectangle " + zIndex + ' ' + x + ',' + y + ',' + width + ',' + height);
+        }
+
+        @Override
+        public void onText(int zIndex, Element element, float x, float y, float width, float height, String text, int start,
+            int end) {
+            calls.add("text " + zIndex + ' ' + x + ',' + y + ',' + width + ',' + height + ' ' + text + ' ' + start + '-' + end);
+        }
+
+        @Override
+        public void onClipStart(int zIndex, Element element, float x, float y, float width, float height) {
+            calls.add("clipStart " + zIndex + ' ' + x + ',' + y + ',' + width + ',' + height);
+        }
+
+        @Override
+        public void onClipEnd(int zIndex, Element element, float x, float y, float width, float height) {
+            calls.add("clipEnd " + zIndex + ' ' + x + ',' + y + ',' + width + ',' + height);
+        }
+
+        @Override
+        public void onCustom(String id, int zIndex, Element element, float x, float y, float width, float height, Object data) {
+            calls.add("custom " + id + ' ' + zIndex + ' ' + x + ',' + y + ',' + width + ',' + height + ' ' + data);
+        }
+
+    }
+
+    @Test
+    public void dispatchesEveryKind() {
+        RenderCommandBuffer buffer = buffer();
+        RecordingVisitor visitor = new RecordingVisitor();
+        buffer.accept(visitor);
+        assertEquals(List.of("rectangle 1 1.0,2.0,3.0,4.0", "clipStart 2 5.0,6.0,7.0,8.0", "text 3 9.0,10.0,11.0,12.0 hello world 6-11",
+            "text 4 13.0,14.0,15.0,16.0 whole 0-5", "text 5 17.0,18.0,19.0,20.0 id by value 0-11", "custom text 6 21.0,22.0,23.0,24.0 42",
+            "custom image 7 25.0,26.0,27.0,28.0 icon", "clipEnd 8 29.0,30.0,31.0,32.0"), visitor.calls);
+
+        visitor = new RecordingVisitor();
+        buffer.accept(visitor, 2, 6);
+        assertEquals(List.of("text 3 9.0,10.0,11.0,12.0 hello world 6-11", "text 4 13.0,14.0,15.0,16.0 whole 0-5",
+            "text 5 17.0,18.0,19.0,20.0 id by value 0-11", "custom text 6 21.0,22.0,23.0,24.0 42"), visitor.calls);
+        RecordingVisitor outOfBounds = new RecordingVisitor();
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.accept(outOfBounds, 4, 9));
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.accept(outOfBounds, 5, 4));
+    }
+
+    @Test
+    public void passesLinesToStringVisitors() {
+        ObjectArrayList<String> lines = new ObjectArrayList<>();
+        buffer().accept(new IRenderCommandVisitor() {
+            @Override
+            public void onText(int zIndex, Element element, float x, float y, float width, float height, String text) {
+                lines.add(text);
+            }
+        });
+        assertEquals(List.of("world", "whole", "id by value"), lines);
+    }
+
+    @Test
+    public void keepsDataOfCustomTextCommands() {
+        RenderCommandBuffer buffer = buffer();
+        assertEquals(RenderCommand.KIND_TEXT, buffer.kind(2));
+        assertEquals("hello world", buffer.text(2));
+        assertEquals(6, buffer.textStart(2));
+        assertEquals(11, buffer.textEnd(2));
+        assertEquals("world", buffer.data(2));
+        assertEquals("world", buffer.command(2).data());
+
+        assertEquals(RenderCommand.KIND_CUSTOM, buffer.kind(5));
+        assertEquals(RenderCommand.TEXT_RENDERER_ID, buffer.id(5));
+        assertNull(buffer.text(5));
+        assertEquals(42, buffer.data(5));
+        assertEquals(RenderCommand.KIND_CUSTOM, buffer.command(5).kind());
+    }
+
+    private static RenderCommandBuffer buffer() {
+        RenderCommandBuffer buffer = new RenderCommandBuffer();
+        ElementContext context = new ElementContext();
+        context.reset(100f, 100f, buffer);
+        context.push(RenderCommand.BACKGROUND_RECTANGLE_RENDERER_ID, 1, null, 1, 2, 3, 4, null);
+        context.push(RenderCommand.CLIPPING_START_ID, 2, null, 5, 6, 7, 8, null);
+        context.pushText(3, null, 9, 10, 11, 12, "hello world", 6, 11);
+        context.push(RenderCommand.TEXT_RENDERER_ID, 4, null, 13, 14, 15, 16, "whole");
+        // Ids of custom configs aren't always the same instance as the constants
+        context.push(new String(RenderCommand.TEXT_RENDERER_ID), 5, null, 17, 18, 19, 20, "id by value");
+        // Custom configs could always push text commands with other data
+        context.push(RenderCommand.TEXT_RENDERER_ID, 6, null, 21, 22, 23, 24, 42);
+        context.push("image", 7, null, 25, 26, 27, 28, "icon");
+        context.push(RenderCommand.CLIPPING_END_ID, 8, null, 29, 30, 31, 32, null);
+        return buffer;
+    }
+
+}
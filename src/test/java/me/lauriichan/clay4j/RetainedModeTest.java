@@ -0,0 +1,127 @@
+package me.lauriichan.clay4j;
+
+import static me.lauriichan.clay4j.LayoutSnapshot.assertSameCommands;
+import static me.lauriichan.clay4j.LayoutSnapshot.frame;
+
+import org.junit.jupiter.api.Test;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import me.lauriichan.clay4j.IElementConfig.Text.WrapMode;
+import me.lauriichan.clay4j.Layout.LayoutDirection;
+import me.lauriichan.clay4j.Layout.Padding;
+import me.lauriichan.clay4j.benchmark.BenchmarkFont;
+import me.lauriichan.clay4j.benchmark.TreeShape;
+
+/**
+ * Lays out the same frames with and without retained mode, the render commands have to be identical in every frame.
+ */
+public class RetainedModeTest {
+
+    // Tree size of every frame, repeated sizes reuse the last frame and changed sizes add or remove subtrees
+    private static final int[] FRAME_SIZES = {
+        40,
+        40,
+        41,
+        41,
+        38,
+        40
+    };
+
+    // Text of the changed row and width of the side panel in every frame, only one of them changes from one frame to the next
+    private static final int[] LOCAL_TEXTS = {
+        0,
+        0,
+        1,
+        2,
+        2,
+        0
+    };
+    private static final float[] LOCAL_SIDE_WIDTHS = {
+        200f,
+        200f,
+        200f,
+        200f,
+        260f,
+        260f
+    };
+
+    private static final IFont FONT = new BenchmarkFont(1, 0.5f);
+
+    private static final String[] TEXTS = {
+        "Unchanged text of a row that wraps over a few lines of the panel",
+        "Changed text of the row",
+        "Changed text of the row that now needs more than one line to fit into the panel"
+    };
+
+    @Test
+    public void matchesImmediateMode() {
+        for (TreeShape shape : TreeShape.values()) {
+            LayoutContext immediate = new LayoutContext(TreeShape.WIDTH, TreeShape.HEIGHT);
+            LayoutContext retained = new LayoutContext(TreeShape.WIDTH, TreeShape.HEIGHT);
+            retained.setRetainedMode(true);
+            for (int frame = 0; frame < FRAME_SIZES.length; frame++) {
+                int size = FRAME_SIZES[frame];
+                assertSameCommands(frame(immediate, shape, size), frame(retained, shape, size), shape + ", frame " + frame);
+            }
+        }
+    }
+
+    @Test
+    public void matchesImmediateModeAfterResize() {
+        for (TreeShape shape : TreeShape.values()) {
+            LayoutContext immediate = new LayoutContext(TreeShape.WIDTH, TreeShape.HEIGHT);
+            LayoutContext retained = new LayoutContext(TreeShape.WIDTH, TreeShape.HEIGHT);
+            retained.setRetainedMode(true);
+            for (int frame = 0; frame < 4; frame++) {
+                if (frame == 2) {
+                    immediate.setDimensions(TreeShape.WIDTH / 2f, TreeShape.HEIGHT / 2f);
+                    retained.setDimensions(TreeShape.WIDTH / 2f, TreeShape.HEIGHT / 2f);
+                }
+                assertSameCommands(frame(immediate, shape, 40), frame(retained, shape, 40), shape + ", frame " + frame);
+            }
+        }
+    }
+
+    @Test
+    public void matchesImmediateModeAfterLocalChange() {
+        LayoutContext immediate = new LayoutContext(TreeShape.WIDTH, TreeShape.HEIGHT);
+        LayoutContext retained = new LayoutContext(TreeShape.WIDTH, TreeShape.HEIGHT);
+        retained.setRetainedMode(true);
+        for (int frame = 0; frame < LOCAL_TEXTS.length; frame++) {
+            String text = TEXTS[LOCAL_TEXTS[frame]];
+            float sideWidth = LOCAL_SIDE_WIDTHS[frame];
+            assertSameCommands(localChangeFrame(immediate, text, sideWidth), localChangeFrame(retained, text, sideWidth),
+                "frame " + frame);
+        }
+    }
+
+    private static ObjectArrayList<String> localChangeFrame(LayoutContext context, String changedText, float sideWidth) {
+        context.reset();
+        Element.Builder builder = context.newRoot();
+        builder.elementId("root").layout().width(ISizing.fixed(TreeShape.WIDTH)).height(ISizing.fixed(TreeShape.HEIGHT))
+            .padding(new Padding(4)).childGap(4);
+        try (Element root = builder.build()) {
+            builder = root.newElement();
+            builder.elementId("side").layout().width(ISizing.fixed(sideWidth)).height(ISizing.grow())
+                .layoutDirection(LayoutDirection.TOP_TO_BOTTOM).padding(new Padding(2)).childGap(2).renderBackground(true);
+            try (Element side = builder.build()) {
+                for (int index = 0; index < 20; index++) {
+                    builder = side.newElement();
+                    builder.elementId("row" + index).layout().width(ISizing.grow()).padding(new Padding(1)).renderBackground(true);
+                    try (Element row = builder.build()) {
+                        builder = row.newElement();
+                        builder.layout().addConfigs(IElementConfig.Text.builder().text(index == 7 ? changedText : TEXTS[0]).font(FONT)
+                            .fontSize(14).wrapMode(WrapMode.WRAP_WORDS).build());
+                        builder.build().close();
+                    }
+                }
+            }
+            builder = root.newElement();
+            builder.elementId("main").layout().width(ISizing.grow()).height(ISizing.grow()).renderBackground(true);
+            builder.build().close();
+        }
+        context.calculateLayout();
+        return LayoutSnapshot.of(context);
+    }
+
+}
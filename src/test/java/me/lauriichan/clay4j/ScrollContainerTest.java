@@ -0,0 +1,95 @@
+package me.lauriichan.clay4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import me.lauriichan.clay4j.LayoutContext.ScrollDataInternal;
+import me.lauriichan.clay4j.Layout.LayoutDirection;
+
+/**
+ * Declares scroll containers in some frames and not in others, the scroll data of a container has to be removed from the
+ * list and the map once it wasn't declared anymore.
+ */
+public class ScrollContainerTest {
+
+    @Test
+    public void removesContainersThatAreNotDeclared() {
+        LayoutContext context = new LayoutContext(400f, 400f);
+        frame(context, "first", "second", "third");
+        assertContainers(context, "first", "second", "third");
+
+        // Scroll the second container, it has to start at the top again once it was removed
+        context.setPointer(150f, 50f, false);
+        context.updateScrollContainers(false, 0f, -40f, 0.016f);
+        ScrollDataInternal second = context.scrollDataMap.get("second");
+        assertTrue(second.scrollY < 0f, "second container wasn't scrolled");
+
+        frame(context, "first", "third");
+        assertContainers(context, "first", "third");
+
+        frame(context);
+        assertContainers(context);
+
+        frame(context, "second");
+        assertContainers(context, "second");
+        assertNotSame(second, context.scrollDataMap.get("second"));
+        assertEquals(0f, context.scrollDataMap.get("second").scrollY, 0f);
+    }
+
+    @Test
+    public void keepsOrderOfRemainingContainers() {
+        LayoutContext context = new LayoutContext(400f, 400f);
+        frame(context, "first", "second", "third", "fourth");
+        ScrollDataInternal third = context.scrollDataMap.get("third");
+        frame(context, "first", "third", "fourth");
+        assertContainers(context, "first", "third", "fourth");
+        assertSame(third, context.scrollDataMap.get("third"));
+        // A container declared again in another position keeps its place
+        frame(context, "fourth", "first", "third");
+        assertContainers(context, "first", "third", "fourth");
+    }
+
+    private static void assertContainers(LayoutContext context, String... expected) {
+        // Stale containers are removed when the scroll containers are updated
+        context.updateScrollContainers(false, 0f, 0f, 0.016f);
+        ObjectArrayList<String> ids = new ObjectArrayList<>();
+        for (ScrollDataInternal scrollData : context.scrollDataList) {
+            ids.add(scrollData.elementId);
+            assertSame(scrollData, context.scrollDataMap.get(scrollData.elementId), scrollData.elementId);
+        }
+        assertEquals(List.of(expected), ids);
+        assertEquals(expected.length, context.scrollDataMap.size());
+        for (String id : expected) {
+            assertTrue(context.scrollDataMap.containsKey(id), id);
+        }
+    }
+
+    private static void frame(LayoutContext context, String... containers) {
+        context.reset();
+        Element.Builder builder = context.newRoot();
+        builder.layout().width(ISizing.fixed(400)).height(ISizing.fixed(400));
+        try (Element root = builder.build()) {
+            for (String id : containers) {
+                builder = root.newElement();
+                builder.elementId(id).layout().width(ISizing.fixed(100)).height(ISizing.fixed(100))
+                    .layoutDirection(LayoutDirection.TOP_TO_BOTTOM).addConfigs(IElementConfig.Clip.builder().vertical(true).build());
+                try (Element container = builder.build()) {
+                    for (int i = 0; i < 10; i++) {
+                        builder = container.newElement();
+                        builder.layout().width(ISizing.fixed(100)).height(ISizing.fixed(30));
+                        builder.build().close();
+                    }
+                }
+            }
+        }
+        context.calculateLayout();
+    }
+
+}
@@ -0,0 +1,73 @@
+package me.lauriichan.clay4j;
+
+import static me.lauriichan.clay4j.LayoutSnapshot.assertSameCommands;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import me.lauriichan.clay4j.Layout.LayoutDirection;
+import me.lauriichan.clay4j.Layout.Padding;
+
+/**
+ * Checks the geometry of every sizing type against values calculated by hand, in a fresh frame and in a frame that reuses
+ * the element store of the last one.
+ */
+public class SizingTest {
+
+    private static final List<String> EXPECTED = List.of(
+        // Fixed
+        "background_rectangle 0 fixed 10.0,10.0,100.0,40.0 null",
+        // Grows into the space left after fixed, percentage and fit siblings, shared with the capped column
+        "background_rectangle 0 grow 115.0,10.0,92.0,50.0 null",
+        // A quarter of 400 minus padding and child gaps
+        "background_rectangle 0 percentage 212.0,10.0,90.0,60.0 null",
+        // Fits its child plus padding
+        "background_rectangle 0 fit 307.0,10.0,28.0,38.0 null",
+        "background_rectangle 0 inner 311.0,14.0,20.0,30.0 null",
+        // Grows up to its max of 50
+        "background_rectangle 0 column 340.0,10.0,50.0,100.0 null",
+        // Grows along the column, minus the gap and the min size of the fit sibling
+        "background_rectangle 0 top 344.0,14.0,40.0,80.0 null",
+        "background_rectangle 0 bottom 344.0,96.0,30.0,10.0 null");
+
+    @Test
+    public void matchesExpectedGeometry() {
+        LayoutContext context = new LayoutContext(400f, 300f);
+        for (int frame = 0; frame < 2; frame++) {
+            context.reset();
+            build(context);
+            context.calculateLayout();
+            assertSameCommands(EXPECTED, LayoutSnapshot.of(context), "frame " + frame);
+        }
+    }
+
+    private static void build(LayoutContext context) {
+        Element.Builder builder = context.newRoot();
+        builder.elementId("root").layout().width(ISizing.fixed(400)).height(ISizing.fixed(300)).padding(new Padding(10)).childGap(5);
+        try (Element root = builder.build()) {
+            leaf(root, "fixed", ISizing.fixed(100), ISizing.fixed(40));
+            leaf(root, "grow", ISizing.grow(), ISizing.fixed(50));
+            leaf(root, "percentage", ISizing.percentage(0.25f), ISizing.fixed(60));
+            builder = root.newElement();
+            builder.elementId("fit").layout().width(ISizing.fit()).height(ISizing.fit()).padding(new Padding(4)).renderBackground(true);
+            try (Element fit = builder.build()) {
+                leaf(fit, "inner", ISizing.fixed(20), ISizing.fixed(30));
+            }
+            builder = root.newElement();
+            builder.elementId("column").layout().width(ISizing.grow(0, 50)).height(ISizing.fixed(100))
+                .layoutDirection(LayoutDirection.TOP_TO_BOTTOM).padding(new Padding(4)).childGap(2).renderBackground(true);
+            try (Element column = builder.build()) {
+                leaf(column, "top", ISizing.fixed(40), ISizing.grow());
+                leaf(column, "bottom", ISizing.fixed(30), ISizing.fit(10, 80));
+            }
+        }
+    }
+
+    private static void leaf(Element parent, String elementId, ISizing width, ISizing height) {
+        Element.Builder builder = parent.newElement();
+        builder.elementId(elementId).layout().width(width).height(height).renderBackground(true);
+        builder.build().close();
+    }
+
+}
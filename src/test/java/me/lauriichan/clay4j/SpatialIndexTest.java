@@ -0,0 +1,185 @@
+package me.lauriichan.clay4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import me.lauriichan.clay4j.IElementConfig.Floating.AttachPointType;
+import me.lauriichan.clay4j.IElementConfig.Floating.AttachToElement;
+import me.lauriichan.clay4j.IElementConfig.Floating.PointerCaptureMode;
+import me.lauriichan.clay4j.Layout.LayoutDirection;
+import me.lauriichan.clay4j.Layout.Padding;
+import me.lauriichan.clay4j.benchmark.TreeShape;
+
+/**
+ * Compares the hovered elements of the spatial index with a walk over every element of the layout, like pointer hit testing
+ * worked before the index. Points are taken from a grid and from the corners, the edges and the centers of every drawn box.
+ */
+public class SpatialIndexTest {
+
+    private static final float WIDTH = 800f, HEIGHT = 600f;
+    private static final int LIST_ITEMS = 120, OVERLAY_CELLS = 30;
+
+    @Test
+    public void matchesWalkOverFloatingTree() {
+        LayoutContext context = new LayoutContext(TreeShape.WIDTH, TreeShape.HEIGHT);
+        for (int frame = 0; frame < 2; frame++) {
+            LayoutSnapshot.frame(context, TreeShape.FLOATING, 60);
+            compare(context, TreeShape.WIDTH, TreeShape.HEIGHT, "frame " + frame);
+        }
+    }
+
+    @Test
+    public void matchesWalkOverClippedListAndOverlays() {
+        LayoutContext context = new LayoutContext(WIDTH, HEIGHT);
+        float[] offsets = {
+            0f,
+            -500f,
+            -1234.5f
+        };
+        for (float offset : offsets) {
+            buildScene(context, offset);
+            compare(context, WIDTH, HEIGHT, "offset " + offset);
+        }
+    }
+
+    private static void compare(LayoutContext context, float width, float height, String message) {
+        ObjectArrayList<Element> roots = roots(context.commandBuffer());
+        FloatArrayList points = new FloatArrayList();
+        for (float x = -3f; x <= width + 3f; x += width / 61f) {
+            for (float y = -3f; y <= height + 3f; y += height / 47f) {
+                points.add(x);
+                points.add(y);
+            }
+        }
+        RenderCommandBuffer buffer = context.commandBuffer();
+        for (int index = 0; index < buffer.size(); index++) {
+            float x = buffer.x(index), y = buffer.y(index), right = x + buffer.width(index), bottom = y + buffer.height(index);
+            points.addElements(points.size(), new float[] {
+                x, y, right, bottom, x - 0.5f, y - 0.5f, right + 0.5f, bottom + 0.5f, (x + right) / 2, (y + bottom) / 2, x, bottom,
+                right, y
+            });
+        }
+        int hits = 0;
+        ObjectArrayList<Element> expected = new ObjectArrayList<>();
+        for (int index = 0; index < points.size(); index += 2) {
+            float x = points.getFloat(index), y = points.getFloat(index + 1);
+            String point = message + ", point " + x + ',' + y;
+            context.setPointer(x, y, false);
+            walk(context, roots, x, y, expected);
+            ObjectArrayList<Element> actual = new ObjectArrayList<>(context.hoveredElements());
+            assertEquals(expected.size(), actual.size(), point + ", hovered count");
+            for (int element = 0; element < expected.size(); element++) {
+                assertSame(expected.get(element), actual.get(element), point + ", hovered element " + element);
+                assertTrue(actual.get(element).hovered, point + ", element " + element + " not marked as hovered");
+            }
+            hits += expected.size();
+        }
+        assertTrue(hits > 0, message + ", nothing was hovered");
+    }
+
+    /**
+     * Roots in render order, the commands of a root are drawn after the commands of every root below it.
+     */
+    private static ObjectArrayList<Element> roots(RenderCommandBuffer buffer) {
+        ObjectArrayList<Element> roots = new ObjectArrayList<>();
+        ReferenceOpenHashSet<Element> seen = new ReferenceOpenHashSet<>();
+        for (int index = 0; index < buffer.size(); index++) {
+            Element element = buffer.element(index);
+            if (element != null && seen.add(element.layoutRoot)) {
+                roots.add(element.layoutRoot);
+            }
+        }
+        return roots;
+    }
+
+    private static void walk(LayoutContext context, ObjectArrayList<Element> roots, float x, float y, ObjectArrayList<Element> output) {
+        output.clear();
+        ObjectArrayList<Element> stack = new ObjectArrayList<>();
+        for (int i = roots.size() - 1; i >= 0; i--) {
+            Element root = roots.get(i);
+            stack.push(root);
+            boolean found = false;
+            while (!stack.isEmpty()) {
+                Element current = stack.pop();
+                if (current.boundingBox.isInside(x, y) && isInsideClip(context, current, x, y)) {
+                    if (!output.contains(current)) {
+                        output.add(current);
+                    }
+                    found = true;
+                }
+                if (current.isText) {
+                    continue;
+                }
+                for (int c = current.children.size() - 1; c >= 0; c--) {
+                    stack.push(current.children.get(c));
+                }
+            }
+            if (found && root.isFloating
+                && root.layout.configOrNull(IElementConfig.Floating.class).captureMode() == PointerCaptureMode.CAPTURE) {
+                break;
+            }
+        }
+    }
+
+    private static boolean isInsideClip(LayoutContext context, Element element, float x, float y) {
+        if (element.clipElementId == null) {
+            return true;
+        }
+        LayoutContext.ScrollDataInternal scrollData = context.scrollDataMap.get(element.clipElementId);
+        return scrollData == null || scrollData.boundingBox == null || scrollData.boundingBox.isInside(x, y);
+    }
+
+    private static void buildScene(LayoutContext context, float offset) {
+        context.reset();
+        Element.Builder builder = context.newRoot();
+        builder.elementId("root").layout().width(ISizing.fixed(WIDTH)).height(ISizing.fixed(HEIGHT)).padding(new Padding(20))
+            .renderBackground(true);
+        try (Element root = builder.build()) {
+            builder = root.newElement();
+            builder.elementId("list").layout().width(ISizing.fixed(300)).height(ISizing.fixed(200))
+                .layoutDirection(LayoutDirection.TOP_TO_BOTTOM).padding(new Padding(2)).childGap(2).renderBackground(true)
+                .addConfigs(IElementConfig.Clip.builder().vertical(true).yChildOffset(offset).build());
+            try (Element list = builder.build()) {
+                for (int index = 0; index < LIST_ITEMS; index++) {
+                    builder = list.newElement();
+                    builder.layout().width(ISizing.fixed(296)).height(ISizing.fixed(18)).childGap(2).renderBackground(true);
+                    try (Element item = builder.build()) {
+                        for (int cell = 0; cell < 3; cell++) {
+                            builder = item.newElement();
+                            builder.layout().width(ISizing.fixed(40)).height(ISizing.grow()).renderBackground(true);
+                            builder.build().close();
+                        }
+                    }
+                }
+            }
+            // Nested sizes, so points can hit the passthrough overlay without hitting the capturing one above it
+            buildOverlay(root, "capture", PointerCaptureMode.CAPTURE, 2, 120f, 100f);
+            buildOverlay(root, "passthrough", PointerCaptureMode.PASSTHROUGH, 1, 200f, 180f);
+            buildOverlay(root, "below", PointerCaptureMode.CAPTURE, 0, 260f, 240f);
+        }
+        context.calculateLayout();
+    }
+
+    private static void buildOverlay(Element root, String elementId, PointerCaptureMode captureMode, int zIndex, float width,
+        float height) {
+        Element.Builder builder = root.newElement();
+        builder.elementId(elementId).layout().width(ISizing.fixed(width)).height(ISizing.fixed(height)).padding(new Padding(4)).childGap(3)
+            .layoutDirection(LayoutDirection.LEFT_TO_RIGHT).renderBackground(true)
+            .addConfigs(IElementConfig.Floating.builder().attachTo(AttachToElement.ATTACH_TO_PARENT).parent(AttachPointType.TOP_LEFT)
+                .element(AttachPointType.TOP_LEFT).zIndex(zIndex).captureMode(captureMode).build());
+        try (Element overlay = builder.build()) {
+            for (int cell = 0; cell < OVERLAY_CELLS; cell++) {
+                builder = overlay.newElement();
+                builder.layout().width(ISizing.fixed(3)).height(ISizing.fixed(20 + cell % 4 * 10)).renderBackground(true);
+                builder.build().close();
+            }
+        }
+    }
+
+}
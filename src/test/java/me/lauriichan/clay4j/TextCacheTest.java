@@ -0,0 +1,146 @@
+package me.lauriichan.clay4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+import me.lauriichan.clay4j.LayoutContext.MeasuredText;
+import me.lauriichan.clay4j.benchmark.BenchmarkFont;
+
+/**
+ * Fills text caches with texts measured by a separate layout context and checks which of them are evicted.
+ */
+public class TextCacheTest {
+
+    private static final IFont FONT = new BenchmarkFont(1, 0.5f);
+    private static final float FONT_SIZE = 10f;
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        LayoutContext context = new LayoutContext();
+        TextCache cache = new TextCache();
+        cache.setCapacity(3);
+        MeasuredText first = measure(context, "first"), second = measure(context, "second"), third = measure(context, "third");
+        cache.put(first);
+        cache.put(second);
+        cache.put(third);
+        // The lookup makes the first text the most recently used one, so the second one is evicted next
+        assertSame(first, get(cache, "first"));
+        cache.put(measure(context, "fourth"));
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.evictions());
+        assertNull(get(cache, "second"));
+        assertSame(first, get(cache, "first"));
+        assertSame(third, get(cache, "third"));
+
+        cache.setCapacity(1);
+        assertEquals(1, cache.size());
+        assertEquals(3, cache.evictions());
+        assertSame(third, get(cache, "third"));
+        assertNull(get(cache, "fourth"));
+
+        cache.setCapacity(0);
+        cache.put(first);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.wordCount());
+    }
+
+    @Test
+    public void evictsByWordBudget() {
+        LayoutContext context = new LayoutContext();
+        TextCache cache = new TextCache();
+        cache.setWordBudget(5);
+        cache.put(measure(context, "one two"));
+        cache.put(measure(context, "three four"));
+        assertEquals(4, cache.wordCount());
+
+        cache.put(measure(context, "five six seven"));
+        assertEquals(2, cache.size());
+        assertEquals(5, cache.wordCount());
+        assertEquals(1, cache.evictions());
+        assertNull(get(cache, "one two"));
+
+        // Texts with more words than the budget are never cached and don't evict anything
+        cache.put(measure(context, "a text with more than five words"));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictions());
+
+        // Replacing a text doesn't count its words twice
+        cache.put(measure(context, "three four"));
+        assertEquals(5, cache.wordCount());
+
+        cache.setWordBudget(3);
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.wordCount());
+        assertEquals(2, cache.evictions());
+        assertNull(get(cache, "five six seven"));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.wordCount());
+    }
+
+    @Test
+    public void countsHitsAndMisses() {
+        LayoutContext context = new LayoutContext();
+        TextCache cache = new TextCache();
+        assertNull(get(cache, "text"));
+        cache.put(measure(context, "text"));
+        get(cache, "text");
+        get(cache, "text");
+        assertNull(cache.get("text", FONT.id(), FONT_SIZE + 1, 0));
+        assertNull(cache.get("text", FONT.id() + 1, FONT_SIZE, 0));
+        assertEquals(2, cache.hits());
+        assertEquals(3, cache.misses());
+        assertEquals(0, cache.evictions());
+
+        cache.resetStatistics();
+        assertEquals(0, cache.hits());
+        assertEquals(0, cache.misses());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void separatesTextsWithSameHash() {
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        // Measures every character by its code, so both texts have different widths
+        IFont font = new IFont() {
+            @Override
+            public int id() {
+                return 2;
+            }
+
+            @Override
+            public void calculateSize(String text, float fontSize, float[] size) {
+                float width = 0f;
+                for (int i = 0; i < text.length(); i++) {
+                    width += text.charAt(i);
+                }
+                size[0] = width;
+                size[1] = fontSize;
+            }
+        };
+        LayoutContext context = new LayoutContext();
+        MeasuredText first = context.measuredText(0, IElementConfig.Text.builder().text("Aa").font(font).fontSize(FONT_SIZE).build());
+        MeasuredText second = context.measuredText(0, IElementConfig.Text.builder().text("BB").font(font).fontSize(FONT_SIZE).build());
+        assertEquals(2, context.textCache().size());
+        assertEquals("BB", second.text);
+        assertEquals('A' + 'a', first.width(), 0.001f);
+        assertEquals('B' + 'B', second.width(), 0.001f);
+        assertNotEquals(first.width(), second.width(), "widths of the texts");
+        assertSame(first, context.textCache().get("Aa", 2, FONT_SIZE, 0));
+        assertSame(second, context.textCache().get("BB", 2, FONT_SIZE, 0));
+    }
+
+    private static MeasuredText get(TextCache cache, String text) {
+        return cache.get(text, FONT.id(), FONT_SIZE, 0);
+    }
+
+    private static MeasuredText measure(LayoutContext context, String text) {
+        return context.measuredText(0, IElementConfig.Text.builder().text(text).font(FONT).fontSize(FONT_SIZE).build());
+    }
+
+}
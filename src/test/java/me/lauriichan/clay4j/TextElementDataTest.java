@@ -0,0 +1,181 @@
+package me.lauriichan.clay4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import me.lauriichan.clay4j.IElementConfig.Text.WrapMode;
+import me.lauriichan.clay4j.LayoutContext.MeasuredText;
+import me.lauriichan.clay4j.LayoutContext.MeasuredWord;
+import me.lauriichan.clay4j.Layout.LayoutDirection;
+import me.lauriichan.clay4j.benchmark.BenchmarkFont;
+import me.lauriichan.clay4j.data.TextElementData;
+
+/**
+ * Wraps texts and compares the lines, and the ranges of their text commands, with the lines the word wrap created as
+ * strings before lines were stored as offsets into the text.
+ */
+public class TextElementDataTest {
+
+    private static final IFont FONT = new BenchmarkFont(1, 0.5f);
+
+    private static final String[] TEXTS = {
+        "The quick brown fox jumps over the lazy dog",
+        "First line\nsecond line which is a bit longer than the first one\n\nafter an empty line",
+        "Trailing space \nand  double  spaces  between words",
+        "Averyveryverylongwordthatdoesnotfitanywhere followed by short words",
+        "short"
+    };
+    private static final float[] WIDTHS = {
+        600f,
+        240f,
+        120f,
+        60f,
+        // Shorter than some words, so they get a line of their own
+        30f
+    };
+
+    @Test
+    public void matchesOldLines() {
+        LayoutContext context = new LayoutContext(800f, 800f);
+        for (float width : WIDTHS) {
+            for (float fontSize : new float[] {
+                10f,
+                16f
+            }) {
+                ObjectArrayList<Element> texts = frame(context, width, fontSize);
+                RenderCommandBuffer buffer = context.commandBuffer();
+                for (Element element : texts) {
+                    IElementConfig.Text config = element.layout.configOrNull(IElementConfig.Text.class);
+                    ObjectArrayList<String> expected = oldLines(context.measuredText(0, config), config, element.width);
+                    TextElementData data = element.dataOrNull(TextElementData.class);
+                    assertSame(data, element.data(IElementData.class).orElseThrow(), "text data slot");
+                    String message = "'" + config.text() + "' at " + width + ", " + fontSize;
+                    assertEquals(expected.size(), data.lineCount(), message + ", line count");
+                    for (int line = 0; line < expected.size(); line++) {
+                        assertEquals(expected.get(line), data.lineText(line), message + ", line " + line);
+                        assertEquals(expected.get(line), data.lines.get(line).text(), message + ", record of line " + line);
+                    }
+                    // Every line is drawn as range of the whole text
+                    ObjectArrayList<String> drawn = new ObjectArrayList<>();
+                    for (int index = 0; index < buffer.size(); index++) {
+                        if (buffer.element(index) == element && buffer.kind(index) == RenderCommand.KIND_TEXT) {
+                            assertSame(config.text(), buffer.text(index), message + ", text of command " + index);
+                            drawn.add(buffer.text(index).substring(buffer.textStart(index), buffer.textEnd(index)));
+                            assertEquals(drawn.get(drawn.size() - 1), buffer.data(index), message + ", data of command " + index);
+                        }
+                    }
+                    // Empty lines aren't drawn
+                    expected.removeIf(String::isEmpty);
+                    assertEquals(expected, drawn, message + ", drawn lines");
+                }
+            }
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void appendsDeprecatedLines() {
+        TextElementData data = new TextElementData(10f, 10f);
+        data.reset("ignored");
+        data.reset();
+        data.add(new TextElementData.Line(1f, 2f, "first"));
+        data.add(new TextElementData.Line(3f, 4f, ""));
+        data.add(new TextElementData.Line(5f, 6f, "third"));
+        assertEquals("firstthird", data.text());
+        assertEquals(3, data.lineCount());
+        assertEquals("first", data.lineText(0));
+        assertTrue(data.isLineEmpty(1));
+        assertEquals("third", data.lines.get(2).text());
+        assertEquals(5f, data.lineWidth(2), 0f);
+        assertEquals(6f, data.lines.get(2).height(), 0f);
+    }
+
+    @Test
+    public void replacesRecordsOfReusedLines() {
+        TextElementData data = new TextElementData(10f, 10f);
+        data.reset("one two");
+        data.add(0, 3, 3f, 1f);
+        data.add(4, 7, 3f, 1f);
+        TextElementData.Line first = data.line(0);
+        assertSame(first, data.lines.get(0));
+        assertEquals("two", data.lines.get(1).text());
+
+        data.reset("three four");
+        data.add(0, 5, 5f, 1f);
+        assertNotSame(first, data.line(0));
+        assertEquals("three", data.line(0).text());
+        assertEquals(1, data.lines.size());
+
+        TextElementData copy = new TextElementData(10f, 10f);
+        copy.copyLines(data);
+        assertEquals("three", copy.lines.get(0).text());
+        assertEquals(5, copy.lineEnd(0));
+    }
+
+    private static ObjectArrayList<Element> frame(LayoutContext context, float width, float fontSize) {
+        context.reset();
+        ObjectArrayList<Element> texts = new ObjectArrayList<>();
+        Element.Builder builder = context.newRoot();
+        builder.layout().width(ISizing.fixed(width)).height(ISizing.fit()).layoutDirection(LayoutDirection.TOP_TO_BOTTOM);
+        try (Element root = builder.build()) {
+            for (String text : TEXTS) {
+                builder = root.newElement();
+                builder.layout().width(ISizing.fixed(width))
+                    .addConfigs(IElementConfig.Text.builder().text(text).font(FONT).fontSize(fontSize).wrapMode(WrapMode.WRAP_WORDS).build());
+                Element element = builder.build();
+                element.close();
+                texts.add(element);
+            }
+        }
+        context.calculateLayout();
+        return texts;
+    }
+
+    /**
+     * The word wrap as it created the line strings before, the text of every line is a substring of the text.
+     */
+    private static ObjectArrayList<String> oldLines(MeasuredText measured, IElementConfig.Text config, float width) {
+        ObjectArrayList<String> lines = new ObjectArrayList<>();
+        String text = config.text();
+        if (!measured.containsNewLines() && measured.width() <= width) {
+            lines.add(text);
+            return lines;
+        }
+        float lineWidth = 0;
+        int lineLength = 0, lineStartOffset = 0;
+        float[] size = new float[2];
+        config.font().calculateSize(" ", config.fontSize(), size);
+        float spaceWidth = size[0];
+        MeasuredWord word;
+        for (int i = 0; i < measured.words.size(); i++) {
+            word = measured.words.get(i);
+            if (lineLength == 0 && lineWidth + word.width() > width) {
+                lines.add(text.substring(word.start(), word.start() + word.length()));
+                lineStartOffset = word.start() + word.length();
+            } else if (word.length() == 0 || lineWidth + word.width() > width) {
+                // The old wrap threw for an empty line after a space, it is empty now
+                boolean finalCharIsSpace = lineLength > 0 && text.charAt(lineStartOffset + lineLength - 1) == ' ';
+                lines.add(text.substring(lineStartOffset, lineStartOffset + lineLength + (finalCharIsSpace ? -1 : 0)));
+                if (lineLength != 0 && word.length() != 0) {
+                    i--;
+                }
+                lineWidth = 0;
+                lineLength = 0;
+                lineStartOffset = word.start();
+            } else {
+                lineWidth += word.width() + config.letterSpacing();
+                lineLength += word.length();
+            }
+        }
+        if (lineLength > 0) {
+            lines.add(text.substring(lineStartOffset, lineStartOffset + lineLength));
+        }
+        return lines;
+    }
+
+}
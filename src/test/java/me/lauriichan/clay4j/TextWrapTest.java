@@ -0,0 +1,88 @@
+package me.lauriichan.clay4j;
+
+import static me.lauriichan.clay4j.LayoutSnapshot.assertSameCommands;
+
+import org.junit.jupiter.api.Test;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import me.lauriichan.clay4j.IElementConfig.Text.WrapMode;
+import me.lauriichan.clay4j.Layout.LayoutDirection;
+import me.lauriichan.clay4j.Layout.Padding;
+import me.lauriichan.clay4j.benchmark.BenchmarkFont;
+
+/**
+ * Lays out wrapped text in one context over several frames, so the wrapped lines of the last frame are reused while the
+ * text and its width stay the same, and compares every frame with a fresh context.
+ */
+public class TextWrapTest {
+
+    // Width of the panel and font size of the text in every frame
+    private static final float[] WIDTHS = {
+        300f,
+        300f,
+        240f,
+        240f,
+        240f,
+        300f,
+        120f
+    };
+    private static final float[] FONT_SIZES = {
+        10f,
+        10f,
+        10f,
+        14f,
+        14f,
+        10f,
+        10f
+    };
+
+    private static final IFont FONT = new BenchmarkFont(1, 0.5f);
+
+    private static final String[] PARAGRAPHS = {
+        "The quick brown fox jumps over the lazy dog while the layout engine wraps every single word of this sentence.",
+        "Short line.",
+        "Pack my box with five dozen liquor jugs\nHow vexingly quick daft zebras jump\nSphinx of black quartz, judge my vow.",
+        "Averyveryverylongwordthatdoesnotfitintothepanelatall and a few short words after it."
+    };
+
+    @Test
+    public void matchesFreshLayout() {
+        LayoutContext context = new LayoutContext(600f, 800f);
+        for (int frame = 0; frame < WIDTHS.length; frame++) {
+            ObjectArrayList<String> expected = frame(new LayoutContext(600f, 800f), WIDTHS[frame], FONT_SIZES[frame]);
+            assertSameCommands(expected, frame(context, WIDTHS[frame], FONT_SIZES[frame]), "frame " + frame);
+        }
+    }
+
+    @Test
+    public void matchesFreshLayoutInRetainedMode() {
+        LayoutContext context = new LayoutContext(600f, 800f);
+        context.setRetainedMode(true);
+        for (int frame = 0; frame < WIDTHS.length; frame++) {
+            ObjectArrayList<String> expected = frame(new LayoutContext(600f, 800f), WIDTHS[frame], FONT_SIZES[frame]);
+            assertSameCommands(expected, frame(context, WIDTHS[frame], FONT_SIZES[frame]), "frame " + frame);
+        }
+    }
+
+    private static ObjectArrayList<String> frame(LayoutContext context, float width, float fontSize) {
+        context.reset();
+        Element.Builder builder = context.newRoot();
+        builder.elementId("panel").layout().width(ISizing.fixed(width)).height(ISizing.fit())
+            .layoutDirection(LayoutDirection.TOP_TO_BOTTOM).padding(new Padding(2)).childGap(2);
+        try (Element panel = builder.build()) {
+            for (int index = 0; index < PARAGRAPHS.length * 3; index++) {
+                builder = panel.newElement();
+                builder.layout().width(ISizing.fixed(width - 4)).padding(new Padding(2)).renderBackground(true);
+                try (Element paragraph = builder.build()) {
+                    builder = paragraph.newElement();
+                    builder.layout().addConfigs(IElementConfig.Text.builder().text(PARAGRAPHS[index % PARAGRAPHS.length]).font(FONT)
+                        .fontSize(fontSize + index % 3 * 2).wrapMode(WrapMode.WRAP_WORDS).build());
+                    builder.build().close();
+                }
+            }
+        }
+        context.calculateLayout();
+        return LayoutSnapshot.of(context);
+    }
+
+}
@@ -0,0 +1,130 @@
+package me.lauriichan.clay4j;
+
+import static me.lauriichan.clay4j.LayoutSnapshot.line;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import org.junit.jupiter.api.Test;
+
+import me.lauriichan.clay4j.Layout.LayoutDirection;
+import me.lauriichan.clay4j.Layout.Padding;
+import me.lauriichan.clay4j.benchmark.TreeShape;
+
+/**
+ * Lays out the same frames with and without viewport culling. Culling may only drop commands, the remaining ones have to be
+ * identical and in the same order, and every dropped command has to be outside of the viewport or of its clip.
+ */
+public class ViewportCullingTest {
+
+    private static final int SIZE = 300;
+    private static final float LIST_WIDTH = 300f, LIST_HEIGHT = 200f;
+
+    @Test
+    public void onlyDropsOffscreenCommands() {
+        for (TreeShape shape : TreeShape.values()) {
+            LayoutContext full = new LayoutContext(TreeShape.WIDTH, TreeShape.HEIGHT);
+            LayoutContext culled = new LayoutContext(TreeShape.WIDTH, TreeShape.HEIGHT);
+            culled.setViewportCulling(true);
+            for (int frame = 0; frame < 2; frame++) {
+                LayoutSnapshot.frame(full, shape, SIZE);
+                LayoutSnapshot.frame(culled, shape, SIZE);
+                compare(full.commandBuffer(), culled.commandBuffer(), null, shape + ", frame " + frame);
+            }
+        }
+    }
+
+    @Test
+    public void onlyDropsClippedCommands() {
+        LayoutContext full = new LayoutContext(TreeShape.WIDTH, TreeShape.HEIGHT);
+        LayoutContext culled = new LayoutContext(TreeShape.WIDTH, TreeShape.HEIGHT);
+        culled.setViewportCulling(true);
+        float[] offsets = {
+            0f,
+            -500f,
+            -1234.5f
+        };
+        for (float offset : offsets) {
+            // The second frame knows the size of the list from the first one
+            for (int frame = 0; frame < 2; frame++) {
+                buildList(full, offset);
+                buildList(culled, offset);
+                int dropped = compare(full.commandBuffer(), culled.commandBuffer(), full.elementById("list"),
+                    "offset " + offset + ", frame " + frame);
+                if (frame == 1) {
+                    assertTrue(dropped > 0, "offset " + offset + ", nothing was culled");
+                }
+            }
+        }
+    }
+
+    private static int compare(RenderCommandBuffer full, RenderCommandBuffer culled, Element clip, String message) {
+        int clipIndex = -1;
+        for (int index = 0; clip != null && index < full.size(); index++) {
+            if (full.kind(index) == RenderCommand.KIND_CLIP_START && full.element(index) == clip) {
+                clipIndex = index;
+                break;
+            }
+        }
+        int dropped = 0;
+        int index = 0;
+        for (int culledIndex = 0; culledIndex <= culled.size(); culledIndex++) {
+            String expected = culledIndex == culled.size() ? null : line(culled, culledIndex);
+            while (index < full.size() && !line(full, index).equals(expected)) {
+                assertTrue(isHidden(full, index, clipIndex), message + ", dropped visible command " + line(full, index));
+                dropped++;
+                index++;
+            }
+            if (expected != null && index == full.size()) {
+                fail(message + ", command " + expected + " is missing without culling");
+            }
+            index++;
+        }
+        assertEquals(full.size() - culled.size(), dropped, message + ", dropped commands");
+        return dropped;
+    }
+
+    private static boolean isHidden(RenderCommandBuffer buffer, int index, int clipIndex) {
+        float x = buffer.x(index), y = buffer.y(index), width = buffer.width(index), height = buffer.height(index);
+        if (x > TreeShape.WIDTH || y > TreeShape.HEIGHT || x + width < 0 || y + height < 0) {
+            return true;
+        }
+        if (clipIndex == -1 || !isInside(buffer.element(index), buffer.element(clipIndex))) {
+            return false;
+        }
+        return x > buffer.x(clipIndex) + buffer.width(clipIndex) || y > buffer.y(clipIndex) + buffer.height(clipIndex)
+            || x + width < buffer.x(clipIndex) || y + height < buffer.y(clipIndex);
+    }
+
+    private static boolean isInside(Element element, Element ancestor) {
+        for (Element parent = element == null ? null : element.parent(); parent != null; parent = parent.parent()) {
+            if (parent == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void buildList(LayoutContext context, float offset) {
+        context.reset();
+        Element.Builder builder = context.newRoot();
+        builder.elementId("root").layout().width(ISizing.fixed(TreeShape.WIDTH)).height(ISizing.fixed(TreeShape.HEIGHT))
+            .padding(new Padding(20));
+        try (Element root = builder.build()) {
+            builder = root.newElement();
+            builder.elementId("list").layout().width(ISizing.fixed(LIST_WIDTH)).height(ISizing.fixed(LIST_HEIGHT))
+                .layoutDirection(LayoutDirection.TOP_TO_BOTTOM).padding(new Padding(2)).childGap(2).renderBackground(true)
+                .addConfigs(IElementConfig.Clip.builder().vertical(true).yChildOffset(offset).build());
+            try (Element list = builder.build()) {
+                for (int index = 0; index < 200; index++) {
+                    builder = list.newElement();
+                    builder.elementId("item" + index).layout().width(ISizing.fixed(LIST_WIDTH - 4)).height(ISizing.fixed(18))
+                        .renderBackground(true);
+                    builder.build().close();
+                }
+            }
+        }
+        context.calculateLayout();
+    }
+
+}
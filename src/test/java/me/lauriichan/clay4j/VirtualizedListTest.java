@@ -0,0 +1,129 @@
+package me.lauriichan.clay4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+
+import org.junit.jupiter.api.Test;
+
+import me.lauriichan.clay4j.Layout.LayoutDirection;
+import me.lauriichan.clay4j.Layout.Padding;
+
+/**
+ * Lays out virtualized lists next to lists that declare all of their items. The virtualized list has to cover its viewport
+ * from the first frame on and has to place every declared item where the full list places it.
+ */
+public class VirtualizedListTest {
+
+    private static final float WIDTH = 800f, HEIGHT = 600f;
+    private static final float LIST_WIDTH = 300f, LIST_HEIGHT = 400f;
+    private static final float ITEM_EXTENT = 20f;
+    private static final int ITEM_COUNT = 1000;
+
+    @Test
+    public void coversViewportOnFirstFrame() {
+        ISizing[] sizings = {
+            ISizing.fixed(LIST_HEIGHT),
+            ISizing.fit(0, LIST_HEIGHT),
+            ISizing.grow(0, LIST_HEIGHT)
+        };
+        for (ISizing sizing : sizings) {
+            LayoutContext context = new LayoutContext(WIDTH, HEIGHT);
+            BitSet built = buildVirtual(context, sizing, 0, 0, 0f);
+            int rows = (int) (LIST_HEIGHT / ITEM_EXTENT);
+            for (int index = 0; index < rows; index++) {
+                assertTrue(built.get(index), sizing.type() + ", row " + index + " missing on the first frame");
+            }
+        }
+    }
+
+    @Test
+    public void placesItemsLikeFullList() {
+        float[] offsets = {
+            0f,
+            -333f,
+            -5000f,
+            -(ITEM_COUNT * (ITEM_EXTENT + 2) - LIST_HEIGHT)
+        };
+        for (float offset : offsets) {
+            LayoutContext virtual = new LayoutContext(WIDTH, HEIGHT);
+            LayoutContext full = new LayoutContext(WIDTH, HEIGHT);
+            // The first frame sizes the viewport from the sizing, the second one from the last layout
+            for (int frame = 0; frame < 2; frame++) {
+                String message = "offset " + offset + ", frame " + frame;
+                BitSet built = buildVirtual(virtual, ISizing.fixed(LIST_HEIGHT), 4, 2, offset);
+                buildFull(full, 4, 2, offset);
+
+                int first = built.nextSetBit(0), end = built.previousSetBit(ITEM_COUNT - 1) + 1;
+                assertEquals(end - first, built.cardinality(), message + ", declared lines are not contiguous");
+                float top = 4 - offset, bottom = top + LIST_HEIGHT;
+                for (int index = 0; index < ITEM_COUNT; index++) {
+                    float itemTop = index * (ITEM_EXTENT + 2);
+                    if (itemTop + ITEM_EXTENT > top && itemTop < bottom) {
+                        assertTrue(built.get(index), message + ", visible item " + index + " missing");
+                    }
+                }
+
+                Element list = virtual.elementById("list");
+                float stride = ITEM_EXTENT + 2;
+                if (first > 0) {
+                    assertEquals(first * stride - 2, list.children.get(0).height, 0.001f, message + ", leading spacer");
+                }
+                if (end < ITEM_COUNT) {
+                    assertEquals((ITEM_COUNT - end) * stride - 2, list.children.get(list.children.size() - 1).height, 0.001f,
+                        message + ", trailing spacer");
+                }
+                for (int index = first; index < end; index++) {
+                    BoundingBox expected = full.elementById("item" + index).boundingBox;
+                    BoundingBox actual = virtual.elementById("item" + index).boundingBox;
+                    assertEquals(expected.toString(), actual.toString(), message + ", item " + index);
+                }
+                LayoutContext.ScrollDataInternal expected = full.scrollDataMap.get("list");
+                LayoutContext.ScrollDataInternal actual = virtual.scrollDataMap.get("list");
+                assertNotNull(actual, message);
+                assertEquals(expected.contentHeight, actual.contentHeight, 0.001f, message + ", content height");
+            }
+        }
+    }
+
+    private static BitSet buildVirtual(LayoutContext context, ISizing height, int padding, int gap, float offset) {
+        BitSet built = new BitSet(ITEM_COUNT);
+        context.reset();
+        Element.Builder builder = listBuilder(context, height, padding, gap, offset);
+        builder.layout().addConfigs(IElementConfig.Virtualized.builder().itemCount(ITEM_COUNT).itemExtent(ITEM_EXTENT)
+            .items((parent, index) -> {
+                built.set(index);
+                buildItem(parent, index);
+            }).build());
+        builder.build().close();
+        context.calculateLayout();
+        return built;
+    }
+
+    private static void buildFull(LayoutContext context, int padding, int gap, float offset) {
+        context.reset();
+        try (Element list = listBuilder(context, ISizing.fixed(LIST_HEIGHT), padding, gap, offset).build()) {
+            for (int index = 0; index < ITEM_COUNT; index++) {
+                buildItem(list, index);
+            }
+        }
+        context.calculateLayout();
+    }
+
+    private static Element.Builder listBuilder(LayoutContext context, ISizing height, int padding, int gap, float offset) {
+        Element.Builder builder = context.newRoot();
+        builder.elementId("list").layout().width(ISizing.fixed(LIST_WIDTH)).height(height)
+            .layoutDirection(LayoutDirection.TOP_TO_BOTTOM).padding(new Padding(padding)).childGap(gap)
+            .addConfigs(IElementConfig.Clip.builder().vertical(true).yChildOffset(offset).build());
+        return builder;
+    }
+
+    private static void buildItem(Element parent, int index) {
+        Element.Builder builder = parent.newElement();
+        builder.elementId("item" + index).layout().width(ISizing.fixed(LIST_WIDTH - 8)).height(ISizing.fixed(ITEM_EXTENT));
+        builder.build().close();
+    }
+
+}
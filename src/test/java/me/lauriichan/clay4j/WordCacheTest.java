@@ -0,0 +1,124 @@
+package me.lauriichan.clay4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+/**
+ * Measures the same words from several layout contexts at once, every word has to reach the font once per font size.
+ */
+public class WordCacheTest {
+
+    private static final int THREADS = 8;
+    private static final int WORDS = 400;
+    private static final float[] FONT_SIZES = {
+        10f,
+        14f
+    };
+
+    @Test
+    public void measuresEveryWordOnce() throws Exception {
+        CountingFont font = new CountingFont(1, 0.5f);
+        WordCache cache = new WordCache();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            ObjectArrayList<Future<?>> futures = new ObjectArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int offset = thread;
+                futures.add(executor.submit(() -> {
+                    LayoutContext context = new LayoutContext();
+                    context.setWordCache(cache);
+                    float[] size = new float[2];
+                    start.await();
+                    for (int text = 0; text < WORDS; text++) {
+                        // Every context measures other texts that contain the same words
+                        String line = word(text + offset) + ' ' + word(text * 7 + offset) + ' ' + word(WORDS - text);
+                        for (float fontSize : FONT_SIZES) {
+                            context.measuredText(0, IElementConfig.Text.builder().text(line + ' ' + offset).font(font).fontSize(fontSize)
+                                .build());
+                            String word = word(text * 3 + offset);
+                            cache.calculateSize(font, "a " + word, 2, 2 + word.length(), fontSize, size);
+                            assertEquals(word.length() * 0.5f * fontSize, size[0], 0.001f, word);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        for (float fontSize : FONT_SIZES) {
+            for (int word = 0; word < WORDS * 8; word++) {
+                String text = word(word);
+                assertTrue(font.calls(text, fontSize) <= 1, text + " with size " + fontSize);
+            }
+            assertEquals(1, font.calls(" ", fontSize), "space with size " + fontSize);
+        }
+        assertEquals(font.distinctTexts(), cache.size());
+        assertTrue(cache.size() > WORDS, "cached words");
+    }
+
+    @Test
+    public void measuresAgainAfterClear() {
+        CountingFont font = new CountingFont(1, 0.5f);
+        WordCache cache = new WordCache(4);
+        float[] sizes = new float[8];
+        String text = "zero one two three four";
+        int[] ranges = {
+            0,
+            4,
+            5,
+            8,
+            9,
+            12,
+            13,
+            18
+        };
+        assertEquals(4, cache.calculateSizes(font, text, ranges, 4, 10f, sizes));
+        assertEquals(0, cache.calculateSizes(font, text, ranges, 4, 10f, sizes));
+        assertEquals(4, cache.size());
+        assertEquals(2.5f * 10f, sizes[6], 0.001f);
+
+        // The cache is full, so it is cleared before the next word is stored
+        float[] size = new float[2];
+        assertTrue(cache.calculateSize(font, text, 19, 23, 10f, size));
+        assertEquals(1, cache.size());
+        assertFalse(cache.calculateSize(font, text, 19, 23, 10f, size));
+        assertTrue(cache.calculateSize(font, text, 0, 4, 10f, size));
+        assertEquals(2, font.calls("zero", 10f));
+        assertEquals(1, font.calls("four", 10f));
+
+        // Words that are repeated in a batch are only measured once
+        cache.clear();
+        int[] repeated = {
+            5,
+            8,
+            5,
+            8,
+            9,
+            12
+        };
+        assertEquals(2, cache.calculateSizes(font, text, repeated, 3, 10f, sizes));
+        assertEquals(sizes[0], sizes[2], 0.001f);
+        assertEquals(2, font.calls("one", 10f));
+    }
+
+    private static String word(int index) {
+        return "w" + Integer.toString(index * 31 % 997, 36);
+    }
+
+}
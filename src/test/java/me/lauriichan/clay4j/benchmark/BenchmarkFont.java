@@ -0,0 +1,29 @@
+package me.lauriichan.clay4j.benchmark;
+
+import me.lauriichan.clay4j.IFont;
+
+/**
+ * Fixed-advance font so that benchmarks measure the layout and not a text shaper, tests get exact text sizes from it.
+ */
+public final class BenchmarkFont implements IFont {
+
+    private final int id;
+    private final float advance;
+
+    public BenchmarkFont(int id, float advance) {
+        this.id = id;
+        this.advance = advance;
+    }
+
+    @Override
+    public int id() {
+        return id;
+    }
+
+    @Override
+    public void calculateSize(String text, float fontSize, float[] size) {
+        size[0] = text.length() * advance * fontSize;
+        size[1] = fontSize;
+    }
+
+}
@@ -0,0 +1,143 @@
+package me.lauriichan.clay4j.benchmark;
+
+import me.lauriichan.clay4j.Element;
+import me.lauriichan.clay4j.IElementConfig;
+import me.lauriichan.clay4j.IElementConfig.Floating.AttachPointType;
+import me.lauriichan.clay4j.IElementConfig.Floating.AttachToElement;
+import me.lauriichan.clay4j.IElementConfig.Text.WrapMode;
+import me.lauriichan.clay4j.IFont;
+import me.lauriichan.clay4j.ISizing;
+import me.lauriichan.clay4j.Layout.LayoutDirection;
+import me.lauriichan.clay4j.Layout.Padding;
+import me.lauriichan.clay4j.LayoutContext;
+
+/**
+ * Synthetic trees used by the benchmarks and the tests, all of them are built through the public builder api.
+ */
+public enum TreeShape {
+
+    /**
+     * A single chain of nested containers, {@code size} levels deep.
+     */
+    DEEP {
+        @Override
+        public void build(LayoutContext context, int size) {
+            Element.Builder builder = context.newRoot();
+            builder.elementId("root").layout().width(ISizing.fixed(WIDTH)).height(ISizing.fixed(HEIGHT)).padding(SMALL_PADDING);
+            Element root = builder.build();
+            Element[] chain = new Element[size];
+            Element current = root;
+            for (int depth = 0; depth < size; depth++) {
+                builder = current.newElement();
+                builder.layout().width(ISizing.grow()).height(ISizing.grow()).padding(SMALL_PADDING).childGap(1)
+                    .layoutDirection(depth % 2 == 0 ? LayoutDirection.TOP_TO_BOTTOM : LayoutDirection.LEFT_TO_RIGHT)
+                    .renderBackground(true);
+                current = chain[depth] = builder.build();
+                builder = current.newElement();
+                builder.layout().width(ISizing.fixed(4)).height(ISizing.fixed(4));
+                builder.build().close();
+            }
+            for (int depth = size - 1; depth >= 0; depth--) {
+                chain[depth].close();
+            }
+            root.close();
+        }
+    },
+    /**
+     * A root with {@code size} sibling rows, each row holding a few fixed and growing cells.
+     */
+    WIDE {
+        @Override
+        public void build(LayoutContext context, int size) {
+            Element.Builder builder = context.newRoot();
+            builder.elementId("root").layout().width(ISizing.fixed(WIDTH)).height(ISizing.fixed(HEIGHT))
+                .layoutDirection(LayoutDirection.TOP_TO_BOTTOM).padding(NO_PADDING).childGap(0);
+            try (Element root = builder.build()) {
+                for (int index = 0; index < size; index++) {
+                    builder = root.newElement();
+                    builder.layout().width(ISizing.grow()).height(ISizing.fixed(ROW_HEIGHT)).padding(NO_PADDING).childGap(2)
+                        .renderBackground(index % 2 == 0);
+                    try (Element row = builder.build()) {
+                        for (int cell = 0; cell < 4; cell++) {
+                            builder = row.newElement();
+                            builder.layout().width(cell == 0 ? ISizing.fixed(32) : ISizing.grow()).height(ISizing.grow())
+                                .renderBackground(true);
+                            builder.build().close();
+                        }
+                    }
+                }
+            }
+        }
+    },
+    /**
+     * A root with {@code size} paragraphs of word wrapped text.
+     */
+    TEXT {
+        @Override
+        public void build(LayoutContext context, int size) {
+            Element.Builder builder = context.newRoot();
+            builder.elementId("root").layout().width(ISizing.fixed(WIDTH)).height(ISizing.fixed(HEIGHT))
+                .layoutDirection(LayoutDirection.TOP_TO_BOTTOM).padding(SMALL_PADDING);
+            try (Element root = builder.build()) {
+                for (int index = 0; index < size; index++) {
+                    builder = root.newElement();
+                    builder.layout().width(ISizing.grow()).padding(SMALL_PADDING);
+                    try (Element paragraph = builder.build()) {
+                        builder = paragraph.newElement();
+                        builder.layout().addConfigs(IElementConfig.Text.builder().text(PARAGRAPHS[index % PARAGRAPHS.length]).font(FONT)
+                            .fontSize(14).wrapMode(WrapMode.WRAP_WORDS).build());
+                        builder.build().close();
+                    }
+                }
+            }
+        }
+    },
+    /**
+     * A root with {@code size} anchors, every anchor carrying a floating tooltip.
+     */
+    FLOATING {
+        @Override
+        public void build(LayoutContext context, int size) {
+            Element.Builder builder = context.newRoot();
+            builder.elementId("root").layout().width(ISizing.fixed(WIDTH)).height(ISizing.fixed(HEIGHT))
+                .layoutDirection(LayoutDirection.TOP_TO_BOTTOM).padding(NO_PADDING).childGap(0);
+            try (Element root = builder.build()) {
+                for (int index = 0; index < size; index++) {
+                    builder = root.newElement();
+                    builder.layout().width(ISizing.grow()).height(ISizing.fixed(ROW_HEIGHT)).renderBackground(true);
+                    try (Element anchor = builder.build()) {
+                        builder = anchor.newElement();
+                        builder.layout().width(ISizing.fit()).height(ISizing.fit()).renderBackground(true)
+                            .addConfigs(IElementConfig.Floating.builder().attachTo(AttachToElement.ATTACH_TO_PARENT)
+                                .parent(AttachPointType.BOTTOM_LEFT).element(AttachPointType.TOP_LEFT).zIndex(index % 4).build());
+                        try (Element tooltip = builder.build()) {
+                            builder = tooltip.newElement();
+                            builder.layout().addConfigs(IElementConfig.Text.builder().text("Tooltip " + (index % 16)).font(FONT)
+                                .fontSize(12).wrapMode(WrapMode.WRAP_NONE).build());
+                            builder.build().close();
+                        }
+                    }
+                }
+            }
+        }
+    };
+
+    public static final float WIDTH = 1920f, HEIGHT = 1080f;
+
+    static final float ROW_HEIGHT = 18f;
+
+    static final Padding NO_PADDING = new Padding(0);
+    static final Padding SMALL_PADDING = new Padding(2);
+
+    static final IFont FONT = new BenchmarkFont(1, 0.5f);
+
+    static final String[] PARAGRAPHS = {
+        "The quick brown fox jumps over the lazy dog while the layout engine wraps every single word of this sentence.",
+        "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt ut labore et dolore magna aliqua.",
+        "Short line.",
+        "Pack my box with five dozen liquor jugs\nHow vexingly quick daft zebras jump\nSphinx of black quartz, judge my vow."
+    };
+
+    public abstract void build(LayoutContext context, int size);
+
+}